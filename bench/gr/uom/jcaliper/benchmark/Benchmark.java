@@ -0,0 +1,46 @@
+package gr.uom.jcaliper.benchmark;
+
+/**
+ * A measured operation of a hot path
+ * <p>
+ * The BenchmarkRunner calls setUp once per fixture (not measured) and then operation in a
+ * loop, for a fixed time, reporting the average time per operation. An operation should return
+ * a value that depends on its result, so that the JIT compiler cannot eliminate it.
+ *
+ * @author Panagiotis Kouros
+ */
+public abstract class Benchmark {
+
+	private final String name;
+
+	// Constructors
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	// Methods to be overridden
+
+	/**
+	 * Prepares the data of the benchmark
+	 *
+	 * @param fixture
+	 *            the generated system and its cases
+	 */
+	public abstract void setUp(Fixture fixture);
+
+	/**
+	 * @param i
+	 *            the number of the operation (0 &lt;= i &lt; 2^20, wrapping around), for picking
+	 *            different data in each call
+	 * @return a value depending on the result of the operation
+	 */
+	public abstract long operation(int i);
+
+	// Getters
+
+	public String getName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,190 @@
+package gr.uom.jcaliper.benchmark;
+
+import gr.uom.jcaliper.explorer.CratExplorerBenchmark;
+import gr.uom.jcaliper.metrics.ep.EPCalculatorBenchmark;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the benchmarks of the hot paths on generated systems
+ * <p>
+ * Each benchmark runs on every combination of system size and coupling density: first some
+ * warmup iterations (for the JIT compiler), then the measured iterations. An iteration calls
+ * the operation for a fixed time; the score is the average time per operation. Usage:
+ *
+ * <pre>
+ * java gr.uom.jcaliper.benchmark.BenchmarkRunner [options]
+ *   -classes 100,1000     system sizes (number of classes)
+ *   -density 2,8          entities used by each method
+ *   -warmup 3             warmup iterations
+ *   -iterations 5         measured iterations
+ *   -time 500             milliseconds per iteration
+ *   -seed 1               seed of the system generator
+ *   -filter text          run only the benchmarks whose name contains the text
+ * </pre>
+ *
+ * @author Panagiotis Kouros
+ */
+public class BenchmarkRunner {
+
+	private int[] sizes = { 100, 1000 };
+	private int[] densities = { 2, 8 };
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationTime = 500;
+	private long seed = 1;
+	private String filter = "";
+
+	// keeps the results of the operations alive
+	private static volatile long sink;
+
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		try {
+			runner.parse(args);
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException included
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		runner.run(createBenchmarks());
+	}
+
+	/**
+	 * @return all the benchmarks
+	 */
+	public static ArrayList<Benchmark> createBenchmarks() {
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new EntitySetBenchmark(EntitySetBenchmark.UNION));
+		benchmarks.add(new EntitySetBenchmark(EntitySetBenchmark.INTERSECTION));
+		benchmarks.add(new EntitySetBenchmark(EntitySetBenchmark.DIFFERENCE));
+		benchmarks.add(new EntitySetBenchmark(EntitySetBenchmark.CONTAINS_ALL));
+		benchmarks.add(new EntitySetBenchmark(EntitySetBenchmark.CALCULATE_HASH));
+		benchmarks.add(new EPCalculatorBenchmark(false, false));
+		benchmarks.add(new EPCalculatorBenchmark(false, true));
+		benchmarks.add(new EPCalculatorBenchmark(true, false));
+		benchmarks.add(new EPCalculatorBenchmark(true, true));
+		for (boolean gainBuckets : new boolean[] { false, true }) {
+			benchmarks.add(new NavigatorBenchmark(NavigatorBenchmark.REMOVE_AND_ADD_CLASS,
+					gainBuckets));
+			benchmarks.add(new NavigatorBenchmark(NavigatorBenchmark.GET_BEST_MOVE, gainBuckets));
+			benchmarks.add(new NavigatorBenchmark(NavigatorBenchmark.GET_A_MOVE_BETTER_THAN,
+					gainBuckets));
+		}
+		benchmarks.add(new CratExplorerBenchmark());
+		benchmarks.add(new TabuMemoryBenchmark());
+		return benchmarks;
+	}
+
+	public void run(ArrayList<Benchmark> benchmarks) {
+		System.out.format("%-45s %9s %9s %5s %12s %10s  %s\n", "Benchmark", "(classes)",
+				"(density)", "Cnt", "Score", "Error", "Units");
+		for (int size : sizes)
+			for (int density : densities) {
+				Fixture fixture = new Fixture(size, density, seed);
+				for (Benchmark benchmark : benchmarks)
+					if (benchmark.getName().contains(filter)) {
+						benchmark.setUp(fixture);
+						double[] scores = measure(benchmark);
+						System.out.format("%-45s %9d %9d %5d %12.1f %10.1f  ns/op\n", benchmark
+								.getName(), size, density, iterations, mean(scores),
+								stdDev(scores));
+					}
+			}
+	}
+
+	/**
+	 * @return the average time per operation (ns) of each measured iteration
+	 */
+	private double[] measure(Benchmark benchmark) {
+		int batch = calibrateBatch(benchmark);
+		double[] scores = new double[iterations];
+		int i = 0;
+		for (int iteration = -warmupIterations; iteration < iterations; iteration++) {
+			long operations = 0;
+			long result = 0;
+			long start = System.nanoTime();
+			long end = start + iterationTime * 1000000L;
+			long now;
+			do {
+				for (int k = 0; k < batch; k++)
+					result += benchmark.operation(i++ & 0xFFFFF);
+				operations += batch;
+				now = System.nanoTime();
+			} while (now < end);
+			sink += result;
+			if (iteration >= 0)
+				scores[iteration] = (double) (now - start) / operations;
+		}
+		return scores;
+	}
+
+	/**
+	 * @return a number of operations that takes about 1ms, so that reading the clock does not
+	 *         affect the score
+	 */
+	private int calibrateBatch(Benchmark benchmark) {
+		int batch = 1;
+		while (batch < (1 << 20)) {
+			long start = System.nanoTime();
+			long result = 0;
+			for (int k = 0; k < batch; k++)
+				result += benchmark.operation(k);
+			sink += result;
+			if (System.nanoTime() - start > 1000000L)
+				break;
+			batch <<= 1;
+		}
+		return batch;
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value of " + args[i]);
+			String value = args[i + 1];
+			if (args[i].equals("-classes"))
+				sizes = parseList(value);
+			else if (args[i].equals("-density"))
+				densities = parseList(value);
+			else if (args[i].equals("-warmup"))
+				warmupIterations = Integer.parseInt(value);
+			else if (args[i].equals("-iterations"))
+				iterations = Integer.parseInt(value);
+			else if (args[i].equals("-time"))
+				iterationTime = Long.parseLong(value);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(value);
+			else if (args[i].equals("-filter"))
+				filter = value;
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+	}
+
+	private static int[] parseList(String list) {
+		String[] items = list.split(",");
+		int[] values = new int[items.length];
+		for (int i = 0; i < items.length; i++)
+			values[i] = Integer.parseInt(items[i].trim());
+		return values;
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0.0;
+		for (double value : values)
+			sum += value;
+		return sum / values.length;
+	}
+
+	private static double stdDev(double[] values) {
+		if (values.length < 2)
+			return 0.0;
+		double mean = mean(values);
+		double sum = 0.0;
+		for (double value : values)
+			sum += (value - mean) * (value - mean);
+		return Math.sqrt(sum / (values.length - 1));
+	}
+
+}
@@ -0,0 +1,70 @@
+package gr.uom.jcaliper.benchmark;
+
+import gr.uom.jcaliper.system.CratEntity;
+import gr.uom.jcaliper.system.EntitySet;
+import gr.uom.jcaliper.system.SystemClass;
+
+import java.util.ArrayList;
+
+/**
+ * Set algebra of EntitySet, on the pairs the metric combines: a class (dense, consecutive IDs)
+ * and the relatives of an entity (sparse)
+ *
+ * @author Panagiotis Kouros
+ */
+public class EntitySetBenchmark extends Benchmark {
+
+	// Operations
+	public static final int UNION = 0;
+	public static final int INTERSECTION = 1;
+	public static final int DIFFERENCE = 2;
+	public static final int CONTAINS_ALL = 3;
+	public static final int CALCULATE_HASH = 4;
+
+	private static final String[] NAMES = { "union", "intersection", "difference",
+			"containsAll", "calculateHash" };
+
+	private final int operation;
+	private EntitySet[] classes;
+	private EntitySet[] relatives;
+
+	// Constructors
+
+	public EntitySetBenchmark(int operation) {
+		super("EntitySet." + NAMES[operation]);
+		this.operation = operation;
+	}
+
+	// Methods
+
+	@Override
+	public void setUp(Fixture fixture) {
+		ArrayList<EntitySet> sets = new ArrayList<EntitySet>();
+		for (SystemClass cl : fixture.getSystem().getClasses().values())
+			sets.add(new EntitySet(cl));
+		classes = sets.toArray(new EntitySet[sets.size()]);
+		sets.clear();
+		for (CratEntity entity : fixture.getSystem().getEntities().values())
+			sets.add(entity.getRelatives());
+		relatives = sets.toArray(new EntitySet[sets.size()]);
+	}
+
+	@Override
+	public long operation(int i) {
+		EntitySet theClass = classes[i % classes.length];
+		EntitySet related = relatives[(i * 7) % relatives.length];
+		switch (operation) {
+		case UNION:
+			return theClass.union(related).size();
+		case INTERSECTION:
+			return theClass.intersection(related).size();
+		case DIFFERENCE:
+			return related.difference(theClass).size();
+		case CONTAINS_ALL:
+			return theClass.containsAll(related) ? 1 : 0;
+		default:
+			return theClass.calculateHash();
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package gr.uom.jcaliper.benchmark;
+
+import gr.uom.jcaliper.explorer.CraCase;
+import gr.uom.jcaliper.explorer.CratExplorer;
+import gr.uom.jcaliper.metrics.Metric;
+import gr.uom.jcaliper.metrics.MetricFactory;
+import gr.uom.jcaliper.system.CratSystem;
+import gr.uom.jcaliper.system.SyntheticSystemGenerator;
+
+import java.util.TreeMap;
+
+/**
+ * A generated system, with its cases, metrics and explorers, shared by the benchmarks
+ * <p>
+ * Every class has the same number of entities (a third of them attributes). Each method uses
+ * 'density' entities, most of them of its own class. The system is generated by the
+ * SyntheticSystemGenerator, so the same parameters and seed always generate the same system.
+ *
+ * @author Panagiotis Kouros
+ */
+public class Fixture {
+
+	private static final int ENTITIES_PER_CLASS = 8;
+	private static final int CLASSES_PER_PACKAGE = 20;
+	private static final double LOCALITY = 0.7;
+
+	private final int numOfClasses;
+	private final int density;
+	private final CratSystem system;
+	private final TreeMap<Integer, Metric> metrics = new TreeMap<Integer, Metric>();
+	private final TreeMap<Integer, CratExplorer> explorers = new TreeMap<Integer, CratExplorer>();
+
+	// Constructors
+
+	/**
+	 * @param numOfClasses
+	 *            the size of the system
+	 * @param density
+	 *            the number of entities used by each method
+	 * @param seed
+	 *            the seed of the generator
+	 */
+	public Fixture(int numOfClasses, int density, long seed) {
+		this.numOfClasses = numOfClasses;
+		this.density = density;
+		system = new SyntheticSystemGenerator().setSeed(seed).setNumOfClasses(numOfClasses)
+				.setNumOfPackages((numOfClasses + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE)
+				.setNumOfEntities(numOfClasses * ENTITIES_PER_CLASS).setAttributeRatio(1.0 / 3)
+				.setUsesPerMethod(density).setIntraClassCoupling(LOCALITY)
+				.setBoxableAttributeShare(0.0).setMisplacedShare(0.0).generate();
+	}
+
+	// Methods
+
+	/**
+	 * @param boxType
+	 *            CraCase.CRACASE_UNBOXED, CRACASE_BOXED or CRACASE_HYBRID
+	 * @return the EP metric of the case (created once per box type)
+	 */
+	public Metric getMetric(int boxType) {
+		Metric metric = metrics.get(boxType);
+		if (metric == null) {
+			metric = MetricFactory.getMetric(MetricFactory.EP, new CraCase(system, boxType));
+			metrics.put(boxType, metric);
+		}
+		return metric;
+	}
+
+	/**
+	 * @return an explorer at the initial state of the case (created once per box type)
+	 */
+	public CratExplorer getExplorer(int boxType) {
+		CratExplorer explorer = explorers.get(boxType);
+		if (explorer == null) {
+			Metric metric = getMetric(boxType);
+			explorer = new CratExplorer(metric.getCraCase(), metric);
+			explorers.put(boxType, explorer);
+		}
+		return explorer;
+	}
+
+	// Getters
+
+	public CratSystem getSystem() {
+		return system;
+	}
+
+	public int getNumOfClasses() {
+		return numOfClasses;
+	}
+
+	public int getDensity() {
+		return density;
+	}
+
+}
@@ -0,0 +1,83 @@
+package gr.uom.jcaliper.benchmark;
+
+import gr.uom.jcaliper.explorer.CraCase;
+import gr.uom.jcaliper.explorer.CratExplorer;
+import gr.uom.jcaliper.explorer.CratMove;
+import gr.uom.jcaliper.explorer.CratState;
+import gr.uom.jcaliper.explorer.Navigator;
+import gr.uom.jcaliper.metrics.EvaluatedClass;
+import gr.uom.jcaliper.preferences.RunConfiguration;
+
+import java.util.Random;
+
+/**
+ * Navigator operations, on the moves of the initial state, with either ordering of the moves
+ *
+ * @author Panagiotis Kouros
+ */
+public class NavigatorBenchmark extends Benchmark {
+
+	// Operations
+	public static final int REMOVE_AND_ADD_CLASS = 0;
+	public static final int GET_BEST_MOVE = 1;
+	public static final int GET_A_MOVE_BETTER_THAN = 2;
+
+	private static final String[] NAMES = { "removeClass+addClass", "getBestMove",
+			"getAMoveBetterThan" };
+
+	private final int operation;
+	private final boolean gainBuckets;
+	private Navigator navigator;
+	private EvaluatedClass[] classes;
+	private final Random random = new Random(0);
+
+	// Constructors
+
+	/**
+	 * @param operation
+	 *            the measured operation
+	 * @param gainBuckets
+	 *            true to order the moves by gain buckets instead of the treap
+	 */
+	public NavigatorBenchmark(int operation, boolean gainBuckets) {
+		super("Navigator" + (gainBuckets ? "[buckets]." : ".") + NAMES[operation]);
+		this.operation = operation;
+		this.gainBuckets = gainBuckets;
+	}
+
+	// Methods
+
+	@Override
+	public void setUp(Fixture fixture) {
+		CratExplorer explorer = fixture.getExplorer(CraCase.CRACASE_BOXED);
+		CratState initial = (CratState) explorer.getInitialState();
+		RunConfiguration configuration = RunConfiguration.getCurrent();
+		RunConfiguration.setCurrent(new RunConfiguration.Builder().setGainBuckets(gainBuckets)
+				.build());
+		navigator = new Navigator(fixture.getMetric(CraCase.CRACASE_BOXED).toBeMaximized(),
+				explorer.getEmptyClass());
+		RunConfiguration.setCurrent(configuration);
+		navigator.newCurrentState(initial);
+		classes = initial.values().toArray(new EvaluatedClass[initial.size()]);
+	}
+
+	@Override
+	public long operation(int i) {
+		CratMove move;
+		switch (operation) {
+		case REMOVE_AND_ADD_CLASS:
+			EvaluatedClass cl = classes[i % classes.length];
+			navigator.removeClass(cl);
+			navigator.addClass(cl);
+			return navigator.getNumOfFeasibleMoves();
+		case GET_BEST_MOVE:
+			move = navigator.getBestMove();
+			break;
+		default:
+			// any improving move
+			move = navigator.getAMoveBetterThan(0.0, random);
+		}
+		return (move == null) ? 0 : move.getMoving();
+	}
+
+}
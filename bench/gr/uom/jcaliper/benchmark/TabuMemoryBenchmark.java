@@ -0,0 +1,47 @@
+package gr.uom.jcaliper.benchmark;
+
+import gr.uom.jcaliper.explorer.CraCase;
+import gr.uom.jcaliper.explorer.CratExplorer;
+import gr.uom.jcaliper.heuristics.IMove;
+import gr.uom.jcaliper.heuristics.TabuMemory;
+
+import java.util.ArrayList;
+
+/**
+ * TabuMemory.isPermitted, on the moves of the initial state, with the tenure of TabuSearch and
+ * a memory holding the moves of a long search
+ *
+ * @author Panagiotis Kouros
+ */
+public class TabuMemoryBenchmark extends Benchmark {
+
+	private TabuMemory memory;
+	private IMove[] moves;
+	private int moveId;
+
+	// Constructors
+
+	public TabuMemoryBenchmark() {
+		super("TabuMemory.isPermitted");
+	}
+
+	// Methods
+
+	@Override
+	public void setUp(Fixture fixture) {
+		CratExplorer explorer = fixture.getExplorer(CraCase.CRACASE_BOXED);
+		moves = new ArrayList<IMove>(explorer.getEvaluatedMoves()).toArray(new IMove[0]);
+		memory = new TabuMemory();
+		memory.setTenure(5 * (int) Math.sqrt(explorer.getProblemSize()));
+		// every moving entity has been moved once
+		for (moveId = 0; moveId < moves.length; moveId++)
+			memory.update(moveId, moves[moveId]);
+	}
+
+	@Override
+	public long operation(int i) {
+		return memory.isPermitted(moveId + i % moves.length, moves[(i * 31) % moves.length]) ? 1
+				: 0;
+	}
+
+}
@@ -0,0 +1,53 @@
+package gr.uom.jcaliper.explorer;
+
+import gr.uom.jcaliper.benchmark.Benchmark;
+import gr.uom.jcaliper.benchmark.Fixture;
+import gr.uom.jcaliper.metrics.EvaluatedClass;
+
+import java.util.Random;
+
+/**
+ * CratExplorer.doMove: a random feasible move and the move that reverses it, so that the
+ * explorer stays around the initial state
+ *
+ * @author Panagiotis Kouros
+ */
+public class CratExplorerBenchmark extends Benchmark {
+
+	private CratExplorer explorer;
+	private final Random random = new Random(0);
+
+	// Constructors
+
+	public CratExplorerBenchmark() {
+		super("CratExplorer.doMove");
+	}
+
+	// Methods
+
+	@Override
+	public void setUp(Fixture fixture) {
+		explorer = new CratExplorer(fixture.getExplorer(CraCase.CRACASE_BOXED));
+	}
+
+	@Override
+	public long operation(int i) {
+		CratMove move = (CratMove) explorer.getRandomMove(random);
+		if (move == null)
+			return 0;
+		int moving = move.getMoving();
+		EvaluatedClass origin = move.getFrom();
+		EvaluatedClass target = move.getTo();
+		explorer.doMove(move);
+		// the reverse move: from the new target class back to the (maybe empty) new origin
+		CratState state = (CratState) explorer.getCurrentState();
+		EvaluatedClass from = state.get(target.hashPlus(moving));
+		EvaluatedClass to = state.get(origin.hashWithout(moving));
+		if (to == null)
+			to = explorer.getEmptyClass();
+		explorer.doMove(new CratMove(0, moving, from, to, -move.getMoveGain(),
+				move.biggerValueIsBetter));
+		return moving;
+	}
+
+}
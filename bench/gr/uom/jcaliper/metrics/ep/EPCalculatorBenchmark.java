@@ -0,0 +1,76 @@
+package gr.uom.jcaliper.metrics.ep;
+
+import gr.uom.jcaliper.benchmark.Benchmark;
+import gr.uom.jcaliper.benchmark.Fixture;
+import gr.uom.jcaliper.explorer.CraCase;
+import gr.uom.jcaliper.metrics.EvaluatedClass;
+import gr.uom.jcaliper.system.HashedClass;
+
+import java.util.ArrayList;
+
+/**
+ * Class evaluation and move gains of the EP calculators, on the classes of the initial state
+ * <p>
+ * The evaluation is always calculated. The move gains look up the evaluations of the
+ * neighbour classes in the metric's cache, which is warm after the first operations, as
+ * during a search.
+ *
+ * @author Panagiotis Kouros
+ */
+public class EPCalculatorBenchmark extends Benchmark {
+
+	private final boolean hybrid;
+	private final boolean moveGains;
+	private EPMetric metric;
+	private HashedClass[] classes;
+	private double[] evaluations;
+
+	// Constructors
+
+	/**
+	 * @param hybrid
+	 *            benchmark EPCalculatorHybrid (on a hybrid case) instead of EPCalculatorClassic
+	 * @param moveGains
+	 *            benchmark calculateMoveGains instead of calculateClassEvaluation
+	 */
+	public EPCalculatorBenchmark(boolean hybrid, boolean moveGains) {
+		super((hybrid ? "EPCalculatorHybrid." : "EPCalculatorClassic.")
+				+ (moveGains ? "calculateMoveGains" : "calculateClassEvaluation"));
+		this.hybrid = hybrid;
+		this.moveGains = moveGains;
+	}
+
+	// Methods
+
+	@Override
+	public void setUp(Fixture fixture) {
+		int boxType = hybrid ? CraCase.CRACASE_HYBRID : CraCase.CRACASE_BOXED;
+		metric = (EPMetric) fixture.getMetric(boxType);
+		ArrayList<EvaluatedClass> initial = new ArrayList<EvaluatedClass>(metric.getCraCase()
+				.getInitial().values());
+		classes = new HashedClass[initial.size()];
+		evaluations = new double[initial.size()];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = new HashedClass(initial.get(i));
+			evaluations[i] = initial.get(i).getEvaluation();
+		}
+	}
+
+	@Override
+	public long operation(int i) {
+		int index = i % classes.length;
+		EPCalculator calculator;
+		if (hybrid)
+			calculator = new EPCalculatorHybrid(classes[index], metric);
+		else
+			calculator = new EPCalculatorClassic(classes[index], metric);
+		if (!moveGains) {
+			calculator.calculateClassEvaluation();
+			return Double.doubleToLongBits(calculator.getEvaluation());
+		}
+		calculator.setEvaluation(evaluations[index]);
+		calculator.calculateMoveGains();
+		return calculator.getExitGains().size() + calculator.getEntryGains().size();
+	}
+
+}
@@ -0,0 +1,138 @@
+package gr.uom.jcaliper.executor;
+
+import gr.uom.jcaliper.heuristics.HeuristicFactory;
+import gr.uom.jcaliper.preferences.RunConfiguration;
+import gr.uom.jcaliper.system.CratSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Optimizes system models without the Eclipse workbench
+ * <p>
+ * The models are saved by the 'Export model' action of the plug-in. Usage:
+ *
+ * <pre>
+ * java gr.uom.jcaliper.executor.CommandLineRunner [options] model...
+ *   -algorithms hcs,hcf,ts,tsd,sa   algorithms to apply (default ts,tsd)
+ *   -preoptimize                    pre-optimize classes or packages
+ *   -improve                        hill-climb from the optima of ts, tsd and sa
+ *   -parallel                       run the algorithms in parallel
+ *   -target fitness                 stop when an algorithm reaches the fitness
+ *   -time seconds                   max running time per algorithm
+ *   -cache capacity                 max memoized class evaluations (0 = unlimited)
+ *   -store directory                keep class evaluations across runs in the directory
+ *   -buckets                        order the moves by gain buckets
+ *   -candidates k                   keep k target classes per entity (0 = all)
+ *   -log directory                  log moves and results in the directory
+ * </pre>
+ *
+ * The exit status is 0 on success, 1 if a model could not be optimized and 2 on wrong usage.
+ *
+ * @author Panagiotis Kouros
+ */
+public class CommandLineRunner {
+
+	private static final String USAGE = "Usage: CommandLineRunner [-algorithms hcs,hcf,ts,tsd,sa] "
+			+ "[-preoptimize] [-improve] [-parallel] [-target fitness] [-time seconds] "
+			+ "[-cache capacity] [-store directory] [-buckets] [-candidates k] [-log directory] "
+			+ "model...";
+
+	public static void main(String[] args) {
+		RunConfiguration.Builder builder = new RunConfiguration.Builder();
+		ArrayList<File> models = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-algorithms"))
+					setAlgorithms(builder, value(args, ++i));
+				else if (arg.equals("-preoptimize"))
+					builder.setPreoptimize(true);
+				else if (arg.equals("-improve"))
+					builder.setImproveSolutions(true);
+				else if (arg.equals("-parallel"))
+					builder.setParallelPortfolio(true);
+				else if (arg.equals("-target"))
+					builder.setStopAtTarget(true).setTargetFitness(
+							Double.parseDouble(value(args, ++i)));
+				else if (arg.equals("-time"))
+					builder.setTimeLimited(true).setMaxRunningTime(
+							Integer.parseInt(value(args, ++i)));
+				else if (arg.equals("-cache"))
+					builder.setEvaluationCacheCapacity(Integer.parseInt(value(args, ++i)));
+				else if (arg.equals("-store"))
+					builder.setEvaluationStorePath(value(args, ++i));
+				else if (arg.equals("-buckets"))
+					builder.setGainBuckets(true);
+				else if (arg.equals("-candidates"))
+					builder.setCandidateClasses(Integer.parseInt(value(args, ++i)));
+				else if (arg.equals("-log")) {
+					String directory = value(args, ++i);
+					builder.setLogResults(true).setLogPath(directory).setLogResultsFile(
+							new File(directory, "CRAT_results.log").getPath());
+				} else if (arg.startsWith("-"))
+					throw new IllegalArgumentException("Unknown option " + arg);
+				else
+					models.add(new File(arg));
+			}
+			if (models.isEmpty())
+				throw new IllegalArgumentException("No model given");
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException included
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		RunConfiguration.setCurrent(builder.build());
+
+		int failures = 0;
+		for (File model : models)
+			try {
+				optimize(CratSystem.readFrom(model));
+			} catch (IOException e) {
+				System.err.println("Unable to read " + model + ": " + e.getMessage());
+				failures++;
+			} catch (RuntimeException e) {
+				System.err.println("Unable to optimize " + model);
+				e.printStackTrace();
+				failures++;
+			}
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	private static void optimize(CratSystem system) {
+		ExecutionManager exec = ExecutionManager.getInstance(system);
+		exec.clearResults();
+		for (ExecutionSummary result : exec.runHeuristics())
+			System.out.println(system.getName() + " " + result.getOneLinePresentation());
+	}
+
+	private static String value(String[] args, int i) {
+		if (i >= args.length)
+			throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+		return args[i];
+	}
+
+	private static void setAlgorithms(RunConfiguration.Builder builder, String list) {
+		for (int id : new RunConfiguration.Builder().build().getAlgorithmsForSystem())
+			builder.setUseForSystem(id, false);
+		for (String name : list.split(","))
+			builder.setUseForSystem(algorithmId(name.trim()), true);
+	}
+
+	private static int algorithmId(String name) {
+		if (name.equalsIgnoreCase("hcs"))
+			return HeuristicFactory.HILL_CLIMBING_STEEPEST;
+		if (name.equalsIgnoreCase("hcf"))
+			return HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE;
+		if (name.equalsIgnoreCase("ts"))
+			return HeuristicFactory.TABU_SEARCH;
+		if (name.equalsIgnoreCase("tsd"))
+			return HeuristicFactory.TABU_SEARCH_DYNAMIC;
+		if (name.equalsIgnoreCase("sa"))
+			return HeuristicFactory.SIMULATED_ANNEALING;
+		throw new IllegalArgumentException("Unknown algorithm " + name);
+	}
+
+}
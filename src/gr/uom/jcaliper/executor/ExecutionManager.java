@@ -11,9 +11,8 @@ import gr.uom.jcaliper.loggers.MoveLogger;
 import gr.uom.jcaliper.metrics.EvaluatedClass;
 import gr.uom.jcaliper.metrics.Metric;
 import gr.uom.jcaliper.metrics.MetricFactory;
-import gr.uom.jcaliper.plugin.Activator;
-import gr.uom.jcaliper.plugin.ResultsTable;
 import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 import gr.uom.jcaliper.refactoring.LocalOptimum;
 import gr.uom.jcaliper.refactoring.LocalOptimumCreator;
 import gr.uom.jcaliper.system.CratClass;
@@ -22,8 +21,23 @@ import gr.uom.jcaliper.system.HashedClass;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -31,8 +45,6 @@ import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
-import org.eclipse.jface.preference.IPreferenceStore;
-
 /**
  * @author Panagiotis Kouros
  */
@@ -50,13 +62,18 @@ public class ExecutionManager {
 	private CratExplorer explorer;
 	private CratState initial;
 	private OptimizingScenario scenario;
+	private CratState bestOfAll;
+	private String bestAlgorithm;
 
 	private ArrayList<ExecutionSummary> results;
-	private ResultsTable resultsTable;
+	private IResultsViewer resultsViewer;
 	private long startTime;
 	private long stopTime;
 	private Logger resultLogger;
-	private int progressNom, progressDenom;
+	// Pre-optimization progress (completed steps are counted by the worker threads)
+	private final AtomicInteger progressDone = new AtomicInteger();
+	private int progressTotal;
+	private ThreadLocal<CratExplorer> workerExplorer;
 
 	// private Logger moveLogger;
 
@@ -98,10 +115,10 @@ public class ExecutionManager {
 	public ArrayList<ExecutionSummary> runHeuristics() {
 		updatePreferences();
 		SearchAlgorithm.ABORTED = false;
-		scenario = new OptimizingScenario();
+		scenario = new OptimizingScenario(RunConfiguration.getCurrent());
 		// results = new ArrayList<ExecutionSummary>();
-		if (resultsTable != null)
-			resultsTable.updateViewer();
+		if (resultsViewer != null)
+			resultsViewer.updateViewer();
 
 		if (LOG_RESULTS) {
 			moveLogger = new MoveLogger(craCase.getName(), craCase.getInitial().getEvaluation());
@@ -114,15 +131,10 @@ public class ExecutionManager {
 		// Pre-optimization of initial state
 		if (DO_PREOPTIMIZE) {
 			info("\nPreoptimization\n---------------\n");
-			if (craCase.getCaseType() == CraCase.CRACASE_PACKAGE) {
-				progressNom = 0;
-				progressDenom = craCase.getNumOfClasses();
-				initial = preoptimizeClasses(craCase.getClasses());
-			} else {
-				progressNom = 0;
-				progressDenom = craCase.getNumOfClasses() + craCase.getNumOfPackages();
+			if (craCase.getCaseType() == CraCase.CRACASE_PACKAGE)
+				initial = preoptimizeClasses();
+			else
 				initial = preoptimizePackages();
-			}
 		}
 
 		// Main heuristics run (applied on system)
@@ -138,8 +150,8 @@ public class ExecutionManager {
 		}
 		info("\n" + metric.getCacheMemoryStatistics());
 		// info(explorer.getNavigatorStatistics() + "\n");
-		if (resultsTable != null)
-			resultsTable.updateViewer();
+		if (resultsViewer != null)
+			resultsViewer.updateViewer();
 		if (explorer != null)
 			explorer.clear();
 		return results;
@@ -155,38 +167,24 @@ public class ExecutionManager {
 		initial = craCase.getInitial();
 	}
 
-	private CratState preoptimizeClasses(Map<Integer, ? extends CratClass> classSet) {
-		// start with an empty class collection
-		ArrayList<EvaluatedClass> optimized = new ArrayList<EvaluatedClass>();
-		// preoptimize classes
-		if (classSet.size() > 0)
-			for (Map.Entry<Integer, ? extends CratClass> entry : classSet.entrySet()) {
-				int classId = entry.getKey();
-				CratClass curClass = entry.getValue();
-				String className = craCase.getClassName(classId);
-				info(String.format("[%4.1f%%] preoptimizing class %s (%d entities) ",
-						(100.0 * progressNom) / progressDenom, className, curClass.size()));
-				// Don't deconstruct class
-				// CratState curState = new CratState(curClass, metric);
-				// Deconstruct class
-				CratState curState = stateFromClass(curClass);
-				double curEvaluation = curState.getEvaluation();
-				CratState bestOptimum = curState;
-				for (int methodId : scenario.getAlgorithmsForClass()) {
-					SearchAlgorithm heuristic = HeuristicFactory.getHeuristic(methodId, explorer,
-							curState, null, null);
-					// info(String.format("%s..", heuristic.getShortName()));
-					CratState optimum = (CratState) heuristic.getOptimum();
-					// info(String.format(": %+8.6f %s\n", optimum.getEvaluation() - curEvaluation,
-					// optimum));
-					if (optimum.isBetterThan(bestOptimum.getEvaluation()))
-						bestOptimum = optimum;
-				}
-				info(String.format(": %+8.6f\n", bestOptimum.getEvaluation() - curEvaluation));
-				optimized.addAll(bestOptimum.values());
-				progressNom++;
-			}
-		return new CratState(optimized, metric);
+	/**
+	 * Pre-optimizes the classes of the case in parallel
+	 */
+	private CratState preoptimizeClasses() {
+		ExecutorService executor = startPreoptimization(craCase.getNumOfClasses());
+		try {
+			ArrayList<Future<Collection<EvaluatedClass>>> classTasks = new ArrayList<Future<Collection<EvaluatedClass>>>();
+			for (Map.Entry<Integer, ? extends CratClass> entry : craCase.getClasses().entrySet())
+				classTasks.add(executor.submit(new ClassPreoptimization(entry.getKey(), entry
+						.getValue())));
+			// merge the optimized classes
+			ArrayList<EvaluatedClass> optimized = new ArrayList<EvaluatedClass>();
+			for (Future<Collection<EvaluatedClass>> classTask : classTasks)
+				optimized.addAll(waitFor(classTask));
+			return new CratState(optimized, metric);
+		} finally {
+			stopPreoptimization(executor);
+		}
 	}
 
 	private CratState stateFromClass(CratClass cl) {
@@ -207,120 +205,373 @@ public class ExecutionManager {
 		return new CratState(deconstructed, metric);
 	}
 
-	private CratState preoptimizePackage(String packageName,
-			TreeMap<Integer, CratClass> packageClasses) {
-		CratState packageInitial = preoptimizeClasses(packageClasses);
-		if (packageInitial.size() == 0)
-			return packageInitial;
-		info(String.format("[%4.1f%%] preoptimizing package %s...", (100.0 * progressNom)
-				/ progressDenom, packageName));
-		double curEvaluation = packageInitial.getEvaluation();
-		CratState bestOptimum = packageInitial;
-		for (int methodId : scenario.getAlgorithmsForPackage()) {
-			SearchAlgorithm heuristic = HeuristicFactory.getHeuristic(methodId, explorer,
-					packageInitial, null, null);
-			// info(String.format("%s..", heuristic.getShortName()));
+	/**
+	 * Pre-optimizes the packages of the case in parallel. The classes of each package are
+	 * pre-optimized in parallel too, before their package.
+	 */
+	private CratState preoptimizePackages() {
+		ExecutorService executor = startPreoptimization(craCase.getNumOfClasses()
+				+ craCase.getNumOfPackages());
+		try {
+			ArrayList<PackagePreoptimization> packageTasks = new ArrayList<PackagePreoptimization>();
+			TreeMap<Integer, CratClass> packageClasses = new TreeMap<Integer, CratClass>();
+			String currentPackage = "";
+			for (Map.Entry<Integer, ? extends CratClass> entry : craCase.getClasses().entrySet()) {
+				int classId = entry.getKey();
+				CratClass curClass = entry.getValue();
+				String classPackage = craCase.getPackageNameOf(classId);
+				if (!currentPackage.equals(classPackage)) {
+					if (packageClasses.size() > 0)
+						packageTasks.add(new PackagePreoptimization(currentPackage, packageClasses,
+								executor));
+					packageClasses = new TreeMap<Integer, CratClass>();
+					currentPackage = classPackage;
+				}
+				packageClasses.put(classId, curClass);
+			}
+			// preoptimize last package
+			if (packageClasses.size() > 0)
+				packageTasks.add(new PackagePreoptimization(currentPackage, packageClasses,
+						executor));
+			// merge the optimized packages
+			ArrayList<EvaluatedClass> optimized = new ArrayList<EvaluatedClass>();
+			for (PackagePreoptimization packageTask : packageTasks)
+				optimized.addAll(waitFor(packageTask.getResult()).values());
+			return new CratState(optimized, metric);
+		} finally {
+			stopPreoptimization(executor);
+		}
+	}
+
+	/**
+	 * Runs the algorithms on a sub-problem, with the explorer of the current worker thread
+	 *
+	 * @param seed
+	 *            identifies the sub-problem: the random choices of the algorithms depend on it,
+	 *            not on the worker thread or the order the sub-problems are run in
+	 * @return the best optimum found (or the starting state)
+	 */
+	private CratState optimizeSubproblem(CratState starting, Collection<Integer> algorithms,
+			long seed) {
+		CratExplorer ownExplorer = workerExplorer.get();
+		CratState bestOptimum = starting;
+		for (int methodId : algorithms) {
+			SearchAlgorithm heuristic = HeuristicFactory.getHeuristic(methodId, ownExplorer,
+					starting, null, null);
+			heuristic.setSeed((31 * seed) + methodId);
 			CratState optimum = (CratState) heuristic.getOptimum();
-			// info(String.format(": %+8.6f %s\n", optimum.getEvaluation() - curEvaluation,
-			// optimum));
 			if (optimum.isBetterThan(bestOptimum.getEvaluation()))
 				bestOptimum = optimum;
 		}
-		info(String.format(": %+8.6f\n", bestOptimum.getEvaluation() - curEvaluation));
-		progressNom++;
 		return bestOptimum;
 	}
 
-	private CratState preoptimizePackages() {
-		// start with an empty class collection
-		ArrayList<EvaluatedClass> optimized = new ArrayList<EvaluatedClass>();
-		TreeMap<Integer, CratClass> packageClasses = new TreeMap<Integer, CratClass>();
-		String currentPackage = "";
-		for (Map.Entry<Integer, ? extends CratClass> entry : craCase.getClasses().entrySet()) {
-			int classId = entry.getKey();
-			CratClass curClass = entry.getValue();
-			String classPackage = craCase.getPackageNameOf(classId);
-			if (!currentPackage.equals(classPackage)) {
-				CratState packageOptimized = preoptimizePackage(currentPackage, packageClasses);
-				optimized.addAll(packageOptimized.values());
-				packageClasses = new TreeMap<Integer, CratClass>();
-				currentPackage = classPackage;
+	private ExecutorService startPreoptimization(int steps) {
+		progressDone.set(0);
+		progressTotal = steps;
+		// Each worker thread explores with its own fork of the (meanwhile idle) explorer
+		workerExplorer = new ThreadLocal<CratExplorer>() {
+			@Override
+			protected CratExplorer initialValue() {
+				return new CratExplorer(explorer);
+			}
+		};
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Stops the workers, after an error too: the queued tasks are dropped and the running ones
+	 * are waited for, since they still use the explorers of their threads
+	 */
+	private void stopPreoptimization(ExecutorService executor) {
+		executor.shutdownNow();
+		boolean interrupted = false;
+		while (true)
+			try {
+				if (executor.awaitTermination(1, TimeUnit.SECONDS))
+					break;
+			} catch (InterruptedException e) {
+				// stop the running algorithms, but wait for them to return
+				SearchAlgorithm.ABORTED = true;
+				interrupted = true;
 			}
-			packageClasses.put(classId, curClass);
+		workerExplorer = null;
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Counts a completed pre-optimization step
+	 *
+	 * @return the progress, as percentage of the completed steps
+	 */
+	private String stepCompleted() {
+		return String.format("[%4.1f%%]", (100.0 * progressDone.incrementAndGet())
+				/ progressTotal);
+	}
+
+	private static <T> T waitFor(Future<T> task) {
+		boolean interrupted = false;
+		try {
+			while (true)
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					// stop the running algorithms, but wait for them to return
+					SearchAlgorithm.ABORTED = true;
+					interrupted = true;
+				}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Pre-optimization of a class, deconstructed to its movable entities
+	 */
+	private class ClassPreoptimization implements Callable<Collection<EvaluatedClass>> {
+
+		private final int classId;
+		private final CratClass curClass;
+
+		ClassPreoptimization(int classId, CratClass curClass) {
+			this.classId = classId;
+			this.curClass = curClass;
+		}
+
+		@Override
+		public Collection<EvaluatedClass> call() {
+			// Don't deconstruct class
+			// CratState curState = new CratState(curClass, metric);
+			// Deconstruct class
+			CratState curState = stateFromClass(curClass);
+			CratState bestOptimum = optimizeSubproblem(curState, scenario.getAlgorithmsForClass(),
+					classId);
+			info(String.format("%s preoptimized class %s (%d entities): %+8.6f\n",
+					stepCompleted(), craCase.getClassName(classId), curClass.size(),
+					bestOptimum.getEvaluation() - curState.getEvaluation()));
+			return bestOptimum.values();
+		}
+	}
+
+	/**
+	 * Pre-optimization of a package. Its classes are submitted at once; the last of them to
+	 * complete submits the package itself, so no worker thread waits for another.
+	 */
+	private class PackagePreoptimization implements Callable<CratState> {
+
+		private final String packageName;
+		private final ArrayList<FutureTask<Collection<EvaluatedClass>>> classTasks = new ArrayList<FutureTask<Collection<EvaluatedClass>>>();
+		private final FutureTask<CratState> packageTask = new FutureTask<CratState>(this);
+
+		PackagePreoptimization(String packageName, Map<Integer, CratClass> classes,
+				final ExecutorService executor) {
+			this.packageName = packageName;
+			final AtomicInteger pendingClasses = new AtomicInteger(classes.size());
+			for (Map.Entry<Integer, CratClass> entry : classes.entrySet())
+				classTasks.add(new FutureTask<Collection<EvaluatedClass>>(new ClassPreoptimization(
+						entry.getKey(), entry.getValue())) {
+					@Override
+					protected void done() {
+						if (pendingClasses.decrementAndGet() == 0)
+							try {
+								executor.execute(packageTask);
+							} catch (RejectedExecutionException e) {
+								// the pre-optimization is stopped (e.g. another task failed)
+								packageTask.cancel(false);
+							}
+					}
+				});
+			for (FutureTask<Collection<EvaluatedClass>> classTask : classTasks)
+				executor.execute(classTask);
+		}
+
+		@Override
+		public CratState call() {
+			// the classes are already optimized
+			ArrayList<EvaluatedClass> optimized = new ArrayList<EvaluatedClass>();
+			for (FutureTask<Collection<EvaluatedClass>> classTask : classTasks)
+				optimized.addAll(waitFor(classTask));
+			CratState packageInitial = new CratState(optimized, metric);
+			CratState bestOptimum = optimizeSubproblem(packageInitial,
+					scenario.getAlgorithmsForPackage(), packageName.hashCode());
+			info(String.format("%s preoptimized package %s: %+8.6f\n", stepCompleted(),
+					packageName, bestOptimum.getEvaluation() - packageInitial.getEvaluation()));
+			return bestOptimum;
+		}
+
+		/**
+		 * @return the pre-optimized package
+		 */
+		Future<CratState> getResult() {
+			return packageTask;
 		}
-		// preoptimize last package
-		CratState packageOptimized = preoptimizePackage(currentPackage, packageClasses);
-		optimized.addAll(packageOptimized.values());
-		return new CratState(optimized, metric);
 	}
 
 	private void optimizeSystem() {
 		info("\nSystem optimization\n-------------------");
-		CratState bestOfAll = craCase.getInitial();
-		String bestAlgorithm = "";
-		for (int methodId : scenario.getAlgorithmsForSystem()) {
-			CratState starting;
-			if (methodId == HeuristicFactory.SIMULATED_ANNEALING)
-				starting = craCase.getInitial();
-			else
-				starting = initial;
-
-			SearchAlgorithm heuristic = HeuristicFactory.getHeuristic(methodId, explorer, starting,
-					pool, moveLogger);
-
-			// Record execution results and performance metrics
-			ExecutionSummary curExecSum = new ExecutionSummary(craCase);
-			curExecSum.setRunning(true);
-			curExecSum.setHeuristicName(heuristic.getName());
-			curExecSum.setHeuristicShortName(heuristic.getShortName());
-			addResult(curExecSum);
-			if (resultsTable != null)
-				resultsTable.updateViewer();
-
-			// Run heuristic
-			int valueSearchesBefore = metric.getValueSearches();
-			startTimer();
-			CratState best = (CratState) heuristic.getOptimum();
-			stopTimer();
-			// TODO correct calculation of evaluation and moves
-			int valueSearchesAfter = metric.getValueSearches();
-			int totalMoves = heuristic.getNumOfPerfomedMoves();
-			int statesEvaluated = ((valueSearchesAfter - valueSearchesBefore) / 2) + totalMoves;
-
-			LocalOptimumCreator locOptCreator = new LocalOptimumCreator(system);
-			LocalOptimum global = locOptCreator.createLocalOptimum(best);
-			curExecSum.setRefactored(global);
-			double runningTime = getRunningTime();
-			curExecSum.setRunningTime(runningTime);
-			curExecSum.setStatesEvaluated(statesEvaluated);
-			curExecSum.setTotalMoves(totalMoves);
-			curExecSum.setRunning(false);
-
-			System.out.println(craCase.getName()+"\t"+craCase.getNumOfClasses()+"\t"+craCase.getTotalEntities()+"\t"+runningTime);
-
-			if (resultsTable != null)
-				resultsTable.updateViewer();
-
-			// info(curExecSum.getFullPresentation());
-			// info("\n" + curExecSum.getOneLinePresentation());
-			if (LOG_RESULTS) {
-				moveLogger.logResults(curExecSum.getFullPresentation());
-				resultLogger.info(curExecSum.getOneLinePresentation() + craCase.getName());
-				
-				moveLogger.logRefactoringClusters(curExecSum.getRefactoringClusters());
-			}
-			
-			if (best.isBetterThan(bestOfAll.getEvaluation())) {
-				bestOfAll = best;
-				bestAlgorithm = heuristic.getShortName();
+		bestOfAll = craCase.getInitial();
+		bestAlgorithm = "";
+		if (PARALLEL_PORTFOLIO)
+			optimizeSystemInParallel();
+		else
+			for (int methodId : scenario.getAlgorithmsForSystem()) {
+				SearchAlgorithm heuristic = HeuristicFactory.getHeuristic(methodId, explorer,
+						getStartingPoint(methodId), pool, moveLogger);
+
+				// Record execution results and performance metrics
+				ExecutionSummary curExecSum = new ExecutionSummary(craCase);
+				curExecSum.setRunning(true);
+				curExecSum.setHeuristicName(heuristic.getName());
+				curExecSum.setHeuristicShortName(heuristic.getShortName());
+				addResult(curExecSum);
+				if (resultsViewer != null)
+					resultsViewer.updateViewer();
+
+				// Run heuristic
+				int valueSearchesBefore = metric.getValueSearches();
+				startTimer();
+				CratState best = (CratState) heuristic.getOptimum();
+				stopTimer();
+				// TODO correct calculation of evaluation and moves
+				int valueSearchesAfter = metric.getValueSearches();
+				int totalMoves = heuristic.getNumOfPerfomedMoves();
+				int statesEvaluated = ((valueSearchesAfter - valueSearchesBefore) / 2) + totalMoves;
+
+				recordResult(curExecSum, heuristic, best, getRunningTime(), statesEvaluated);
 			}
-
-		}
 		if (LOG_RESULTS)
 			moveLogger.logResults(String.format("(one of) best is %s : %8.6f\n", bestAlgorithm,
 					bestOfAll.getEvaluation()));
 	}
 
+	/**
+	 * Runs the system algorithms in parallel, each with its own explorer over the shared metric.
+	 * Their results are recorded in order of completion.
+	 */
+	private void optimizeSystemInParallel() {
+		TreeSet<Integer> algorithms = scenario.getAlgorithmsForSystem();
+		if (algorithms.isEmpty())
+			return;
+		AtomicBoolean stopSignal = STOP_AT_TARGET ? new AtomicBoolean(false) : null;
+		int threads = Math.min(algorithms.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<PortfolioRun> completion = new ExecutorCompletionService<PortfolioRun>(
+				executor);
+		Map<Future<PortfolioRun>, Integer> submitted = new HashMap<Future<PortfolioRun>, Integer>();
+		try {
+			for (int methodId : algorithms)
+				submitted.put(completion.submit(new PortfolioRun(methodId, stopSignal)), methodId);
+			for (int i = 0; i < algorithms.size(); i++) {
+				Future<PortfolioRun> completed = completion.take();
+				try {
+					PortfolioRun run = completed.get();
+					// a run may reach the target without checking it (e.g. on its last move)
+					if ((stopSignal != null) && run.heuristic.reachesTarget(run.best))
+						stopSignal.set(true);
+					ExecutionSummary curExecSum = new ExecutionSummary(craCase);
+					curExecSum.setHeuristicName(run.heuristic.getName());
+					curExecSum.setHeuristicShortName(run.heuristic.getShortName());
+					addResult(curExecSum);
+					recordResult(curExecSum, run.heuristic, run.best, run.runningTime,
+							run.statesEvaluated);
+				} catch (ExecutionException e) {
+					// the other algorithms go on, but the failed one is reported
+					activityLogger.log(Level.SEVERE, String.format(
+							"\nAlgorithm %d failed: %s\n", submitted.get(completed), e.getCause()),
+							e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			SearchAlgorithm.ABORTED = true;
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private CratState getStartingPoint(int methodId) {
+		if (methodId == HeuristicFactory.SIMULATED_ANNEALING)
+			return craCase.getInitial();
+		return initial;
+	}
+
+	private void recordResult(ExecutionSummary curExecSum, SearchAlgorithm heuristic,
+			CratState best, double runningTime, int statesEvaluated) {
+		LocalOptimumCreator locOptCreator = new LocalOptimumCreator(system);
+		LocalOptimum global = locOptCreator.createLocalOptimum(best);
+		curExecSum.setRefactored(global);
+		curExecSum.setRunningTime(runningTime);
+		curExecSum.setStatesEvaluated(statesEvaluated);
+		curExecSum.setTotalMoves(heuristic.getNumOfPerfomedMoves());
+		curExecSum.setRunning(false);
+
+		System.out.println(craCase.getName()+"\t"+craCase.getNumOfClasses()+"\t"+craCase.getTotalEntities()+"\t"+runningTime);
+
+		if (resultsViewer != null)
+			resultsViewer.updateViewer();
+
+		// info(curExecSum.getFullPresentation());
+		// info("\n" + curExecSum.getOneLinePresentation());
+		if (LOG_RESULTS) {
+			moveLogger.logResults(curExecSum.getFullPresentation());
+			resultLogger.info(curExecSum.getOneLinePresentation() + craCase.getName());
+			
+			moveLogger.logRefactoringClusters(curExecSum.getRefactoringClusters());
+		}
+
+		if (best.isBetterThan(bestOfAll.getEvaluation())) {
+			bestOfAll = best;
+			bestAlgorithm = heuristic.getShortName();
+		}
+	}
+
+	/**
+	 * One algorithm of a parallel run. It has its own fork of the (meanwhile idle) explorer; the
+	 * metric (and its cache) is shared by all the algorithms.
+	 */
+	private class PortfolioRun implements Callable<PortfolioRun> {
+
+		private final int methodId;
+		private final AtomicBoolean stopSignal;
+		private SearchAlgorithm heuristic;
+		private CratState best;
+		private double runningTime;
+		private int statesEvaluated;
+
+		PortfolioRun(int methodId, AtomicBoolean stopSignal) {
+			this.methodId = methodId;
+			this.stopSignal = stopSignal;
+		}
+
+		@Override
+		public PortfolioRun call() {
+			CratExplorer ownExplorer = new CratExplorer(explorer);
+			// The move logger follows one algorithm at a time: not used in parallel runs
+			heuristic = HeuristicFactory.getHeuristic(methodId, ownExplorer,
+					getStartingPoint(methodId), pool, null);
+			if (stopSignal != null)
+				heuristic.setStopAtTarget(TARGET_FITNESS, stopSignal);
+			// Only the searches of this thread: the other algorithms share the metric
+			int valueSearchesBefore = metric.getThreadValueSearches();
+			long start = System.currentTimeMillis();
+			best = (CratState) heuristic.getOptimum();
+			runningTime = (System.currentTimeMillis() - start) / 1000.0;
+			int valueSearchesAfter = metric.getThreadValueSearches();
+			statesEvaluated = ((valueSearchesAfter - valueSearchesBefore) / 2)
+					+ heuristic.getNumOfPerfomedMoves();
+			return this;
+		}
+	}
+
 	private void info(String message) {
 		activityLogger.log(Level.INFO, message);
 	}
@@ -353,11 +604,11 @@ public class ExecutionManager {
 	}
 
 	/**
-	 * @param table
-	 *            the resultTable to set
+	 * @param viewer
+	 *            the viewer of the results (null when running headless)
 	 */
-	public void setResultsTable(ResultsTable table) {
-		resultsTable = table;
+	public void setResultsViewer(IResultsViewer viewer) {
+		resultsViewer = viewer;
 	}
 
 	public double getRunningTime() {
@@ -374,15 +625,15 @@ public class ExecutionManager {
 
 	public void addResult(ExecutionSummary result) {
 		results.add(result);
-		if (resultsTable != null)
-			resultsTable.updateViewer();
+		if (resultsViewer != null)
+			resultsViewer.updateViewer();
 	}
 
 	private void updatePreferences() {
-		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
-		DO_PREOPTIMIZE = store.getBoolean(Preferences.P_DO_PREOPTIMIZE);
-		boolean new_LOG_RESULTS = store.getBoolean(Preferences.P_LOG_RESULTS);
-		String new_LOG_RESULTS_FILE = store.getString(Preferences.P_LOG_RESULTS_FILE);
+		RunConfiguration configuration = RunConfiguration.getCurrent();
+		DO_PREOPTIMIZE = configuration.isPreoptimize();
+		boolean new_LOG_RESULTS = configuration.isLogResults();
+		String new_LOG_RESULTS_FILE = configuration.getLogResultsFile();
 		if (new_LOG_RESULTS && (!LOG_RESULTS || !(LOG_RESULTS_FILE.equals(new_LOG_RESULTS_FILE)))) {
 			LOG_RESULTS = new_LOG_RESULTS;
 			LOG_RESULTS_FILE = new_LOG_RESULTS_FILE;
@@ -390,6 +641,9 @@ public class ExecutionManager {
 		}
 		LOG_RESULTS = new_LOG_RESULTS;
 		LOG_RESULTS_FILE = new_LOG_RESULTS_FILE;
+		PARALLEL_PORTFOLIO = configuration.isParallelPortfolio();
+		STOP_AT_TARGET = configuration.isStopAtTarget();
+		TARGET_FITNESS = configuration.getTargetFitness();
 	}
 
 	// Don't modify next lines. Change the static values in class Preferences
@@ -398,5 +652,8 @@ public class ExecutionManager {
 	private static boolean DO_PREOPTIMIZE;
 	private static boolean LOG_RESULTS = false;
 	private static String LOG_RESULTS_FILE = "";
+	private static boolean PARALLEL_PORTFOLIO;
+	private static boolean STOP_AT_TARGET;
+	private static double TARGET_FITNESS;
 
 }
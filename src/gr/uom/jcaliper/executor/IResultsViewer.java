@@ -0,0 +1,15 @@
+package gr.uom.jcaliper.executor;
+
+/**
+ * A view of the execution results (e.g. the ResultsTable of the plug-in)
+ * 
+ * @author Panagiotis Kouros
+ */
+public interface IResultsViewer {
+
+	/**
+	 * Shows the current results of the ExecutionManager
+	 */
+	public void updateViewer();
+
+}
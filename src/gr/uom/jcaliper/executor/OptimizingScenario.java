@@ -1,13 +1,10 @@
 package gr.uom.jcaliper.executor;
 
 import gr.uom.jcaliper.heuristics.HeuristicFactory;
-import gr.uom.jcaliper.plugin.Activator;
-import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 
 import java.util.TreeSet;
 
-import org.eclipse.jface.preference.IPreferenceStore;
-
 /**
  * @author Panagiotis Kouros
  */
@@ -17,19 +14,8 @@ public class OptimizingScenario {
 	protected TreeSet<Integer> algorithmsForPackage = new TreeSet<Integer>();
 	protected TreeSet<Integer> algorithmsForClass = new TreeSet<Integer>();
 
-	public OptimizingScenario() {
-		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
-
-		if (store.getBoolean(Preferences.P_USE4SYS_HILL_CLIMBING_STEEPEST))
-			algorithmsForSystem.add(HeuristicFactory.HILL_CLIMBING_STEEPEST);
-		if (store.getBoolean(Preferences.P_USE4SYS_HILL_CLIMBING_FIRST_CHOICE))
-			algorithmsForSystem.add(HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE);
-		if (store.getBoolean(Preferences.P_USE4SYS_TABU_SEARCH))
-			algorithmsForSystem.add(HeuristicFactory.TABU_SEARCH);
-		if (store.getBoolean(Preferences.P_USE4SYS_TABU_SEARCH_DYNAMIC))
-			algorithmsForSystem.add(HeuristicFactory.TABU_SEARCH_DYNAMIC);	
-		if (store.getBoolean(Preferences.P_USE4SYS_SIMULATED_ANNEALING))
-			algorithmsForSystem.add(HeuristicFactory.SIMULATED_ANNEALING);
+	public OptimizingScenario(RunConfiguration configuration) {
+		algorithmsForSystem.addAll(configuration.getAlgorithmsForSystem());
 
 /*		algorithmsForPackage.add(HeuristicFactory.HILL_CLIMBING_STEEPEST);
 		algorithmsForPackage.add(HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE);
@@ -209,6 +209,24 @@ public class CraCase implements IEntityPool {
 		return system.getTotalEntities();
 	}
 
+	/**
+	 * @return a 64-bit fingerprint of what the class evaluations depend on: the box type, the
+	 *         number of entities and the entity sets, relatives and box elements of the active
+	 *         entities
+	 */
+	public long getFingerprint() {
+		long fingerprint = EntitySet.mix64(boxType + 1);
+		fingerprint = EntitySet.mix64(fingerprint + totalEntities);
+		for (int entId : systemEntities) {
+			CratEntity entity = getEntity(entId);
+			fingerprint = EntitySet.mix64(fingerprint + entId);
+			fingerprint = EntitySet.mix64(fingerprint + entity.getEntitySet().calculateHash());
+			fingerprint = EntitySet.mix64(fingerprint + entity.getRelatives().calculateHash());
+			fingerprint = EntitySet.mix64(fingerprint + entity.getBoxElements().calculateHash());
+		}
+		return fingerprint;
+	}
+
 	public int getProblemSize() {
 		int size = 0;
 		for (EvaluatedClass cl : initial.getClasses())
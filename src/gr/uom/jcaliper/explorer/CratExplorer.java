@@ -12,6 +12,8 @@ import gr.uom.jcaliper.system.HashedClass;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Random;
 
 /**
  * @author Panagiotis Kouros
@@ -23,24 +25,61 @@ public class CratExplorer implements IStateSpaceExplorer {
 	private Metric metric;
 	private CratState currentState;
 
+	// Class label of each entity in current state, for state snapshots
+	private int[] labels;
+	private int nextLabel;
+	// Entities moved since the last snapshot
+	private int[] journal;
+	private int journalSize;
+	private StateSnapshot lastSnapshot;
+	// Evaluation of the state where the candidate lists of the navigator were widened
+	private boolean widened = false;
+	private double stagnationEvaluation;
+
 	public CratExplorer(CraCase craCase, Metric metric) {
 		this.craCase = craCase;
 		this.metric = metric;
 		currentState = craCase.getInitial().clone();
 		EvaluatedClass emptyClass = getEmptyClass();
-		navigator = new Navigator(metric.toBeMaximized(), emptyClass);
+		navigator = new Navigator(metric.toBeMaximized(), emptyClass, craCase);
 		navigator.newCurrentState(currentState);
+		adaptCandidates();
+		initializeLabels();
 		// System.out.println(metric.getEvaluatedClassesWithDetails());
 	}
 
+	/**
+	 * Creates an explorer at the current state of another one. The case and the metric (with
+	 * its memoized evaluations) are shared; the current state and the navigator are copied, so
+	 * the two explorers can then move independently, even concurrently.
+	 */
 	public CratExplorer(IStateSpaceExplorer explorer) {
-		// TODO Auto-generated constructor stub
+		CratExplorer prototype = (CratExplorer) explorer;
+		craCase = prototype.craCase;
+		metric = prototype.metric;
+		currentState = prototype.currentState.clone();
+		navigator = new Navigator(prototype.navigator);
+		labels = prototype.labels.clone();
+		nextLabel = prototype.nextLabel;
+		journal = new int[prototype.journal.length];
+		journalSize = 0;
+		lastSnapshot = null;
+		widened = prototype.widened;
+		stagnationEvaluation = prototype.stagnationEvaluation;
+	}
+
+	@Override
+	public IStateSpaceExplorer fork() {
+		return new CratExplorer(this);
 	}
 
 	@Override
 	public void moveTo(IProblemState problemState) {
-		currentState = (CratState) problemState;
+		currentState = (CratState) expandState(problemState);
 		navigator.newCurrentState(currentState);
+		widened = false;
+		adaptCandidates();
+		initializeLabels();
 	}
 
 	@Override
@@ -69,9 +108,52 @@ public class CratExplorer implements IStateSpaceExplorer {
 				- origin.getEvaluation() - target.getEvaluation();
 		navigator.addClass(new1);
 		navigator.addClass(new2);
+		adaptCandidates();
+		updateLabels(moving, target);
 		// System.out.println(metric.getEvaluatedClassesWithDetails());
 	}
 
+	@Override
+	public IProblemState recordCurrentState(IProblemState previous) {
+		StateSnapshot snapshot;
+		if ((previous == lastSnapshot) && (journalSize <= journal.length)) {
+			// only the entities moved since the previous snapshot
+			snapshot = lastSnapshot;
+			for (int i = 0; i < journalSize; i++) {
+				int entityId = journal[i];
+				snapshot.labels[entityId] = labels[entityId];
+			}
+			snapshot.evaluation = currentState.getEvaluation();
+			snapshot.hash = currentState.getHash();
+		} else
+			snapshot = new StateSnapshot(labels.clone(), currentState.getEvaluation(),
+					currentState.getHash(), metric.toBeMaximized());
+		lastSnapshot = snapshot;
+		journalSize = 0;
+		return snapshot;
+	}
+
+	@Override
+	public IProblemState expandState(IProblemState state) {
+		if (!(state instanceof StateSnapshot))
+			return state;
+		int[] snapshotLabels = ((StateSnapshot) state).labels;
+		HashMap<Integer, EntitySet> members = new HashMap<Integer, EntitySet>();
+		for (int entityId = 0; entityId < snapshotLabels.length; entityId++)
+			if (snapshotLabels[entityId] != 0) {
+				EntitySet classMembers = members.get(snapshotLabels[entityId]);
+				if (classMembers == null) {
+					classMembers = new EntitySet();
+					members.put(snapshotLabels[entityId], classMembers);
+				}
+				classMembers.add(entityId);
+			}
+		ArrayList<EvaluatedClass> classes = new ArrayList<EvaluatedClass>();
+		for (EntitySet classMembers : members.values())
+			classes.add(metric.getEvaluatedClass(new HashedClass(classMembers)));
+		return new CratState(classes, metric);
+	}
+
 	@Override
 	public IProblemState getCurrentState() {
 		return currentState;
@@ -93,8 +175,8 @@ public class CratExplorer implements IStateSpaceExplorer {
 	}
 
 	@Override
-	public IMove getAMoveBetterThan(double threshold) {
-		return navigator.getAMoveBetterThan(threshold);
+	public IMove getAMoveBetterThan(double threshold, Random random) {
+		return navigator.getAMoveBetterThan(threshold, random);
 	}
 
 	@Override
@@ -105,12 +187,18 @@ public class CratExplorer implements IStateSpaceExplorer {
 	@Override
 	public Collection<? extends IMove> getEvaluatedMoves() {
 		// System.out.println(navigator.getTopEvaluatedMoves(10));
-		return navigator.moves;
+		return navigator.getEvaluatedMoves();
 	}
 
 	@Override
-	public IMove getRandomMove() {
-		return navigator.getRandomMove();
+	public Collection<? extends IMove> getBestMovePerAttribute() {
+		// the tabu attribute of a move is the moving entity
+		return navigator.getBestMovesPerEntity();
+	}
+
+	@Override
+	public IMove getRandomMove(Random random) {
+		return navigator.getRandomMove(random);
 	}
 
 	@Override
@@ -135,7 +223,9 @@ public class CratExplorer implements IStateSpaceExplorer {
 
 	@Override
 	public void finalize() throws Throwable {
-		clear();
+		// the metric may be shared with other explorers: only clear() empties it
+		if (navigator != null)
+			navigator.clear();
 		super.finalize();
 	}
 
@@ -166,6 +256,56 @@ public class CratExplorer implements IStateSpaceExplorer {
 		return (navigator.getNumOfImprovingMoves() == 0);
 	}
 
+	// Candidate lists
+
+	/**
+	 * Widens the candidate target classes of the navigator while the current state is a local
+	 * optimum of its moves, so a state is a local optimum only for all the moves. They are
+	 * narrowed again once the search gets past the state where they were widened.
+	 */
+	private void adaptCandidates() {
+		if (widened && currentState.isBetterThan(stagnationEvaluation)) {
+			navigator.narrowCandidates();
+			widened = false;
+		}
+		while ((navigator.getNumOfImprovingMoves() == 0) && navigator.widenCandidates()) {
+			if (!widened)
+				stagnationEvaluation = currentState.getEvaluation();
+			widened = true;
+		}
+	}
+
+	// State snapshots
+
+	private void initializeLabels() {
+		int maxId = 0;
+		for (int entityId : craCase.getEntitySet())
+			maxId = Math.max(maxId, entityId);
+		labels = new int[maxId + 1];
+		nextLabel = 1;
+		for (EvaluatedClass cl : currentState.values()) {
+			for (int entityId : cl)
+				labels[entityId] = nextLabel;
+			nextLabel++;
+		}
+		journal = new int[maxId + 1];
+		journalSize = 0;
+		lastSnapshot = null;
+	}
+
+	private void updateLabels(int moving, EvaluatedClass target) {
+		if (target.size() == 0)
+			labels[moving] = nextLabel++;
+		else
+			labels[moving] = labels[target.nextId(Integer.MIN_VALUE)];
+		// on overflow, the next snapshot will be a full copy
+		if (journalSize <= journal.length) {
+			if (journalSize < journal.length)
+				journal[journalSize] = moving;
+			journalSize++;
+		}
+	}
+
 	// Don't modify next line. Change the static value in class Preferences
 	protected static final boolean PRINT_DEBUG_INFO = Preferences.PRINT_DEBUG_INFO;
 
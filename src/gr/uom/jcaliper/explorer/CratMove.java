@@ -11,7 +11,7 @@ public class CratMove implements IMove {
 	final protected int moving;
 	final protected EvaluatedClass from;
 	final protected EvaluatedClass to;
-	final protected ComparisonPolicy comparisonPolicy;
+	final protected boolean biggerValueIsBetter;
 	protected double gain;
 
 	/**
@@ -22,15 +22,21 @@ public class CratMove implements IMove {
 	 */
 	public CratMove(int moveId, int moving, EvaluatedClass from, EvaluatedClass to,
 			boolean biggerValueIsBetter) {
+		this(moveId, moving, from, to, from.getExitGain(moving) + to.getEntryGain(moving),
+				biggerValueIsBetter);
+	}
+
+	/**
+	 * Creates a move with an already known gain (a view of a move kept by the Navigator)
+	 */
+	CratMove(int moveId, int moving, EvaluatedClass from, EvaluatedClass to, double gain,
+			boolean biggerValueIsBetter) {
 		this.moveId = moveId;
 		this.moving = moving;
 		this.from = from;
 		this.to = to;
-		gain = from.getExitGain(moving) + to.getEntryGain(moving);
-		if (biggerValueIsBetter)
-			comparisonPolicy = new BiggerValueIsBetter();
-		else
-			comparisonPolicy = new SmallerValueIsBetter();
+		this.gain = gain;
+		this.biggerValueIsBetter = biggerValueIsBetter;
 	}
 
 	@Override
@@ -50,7 +56,9 @@ public class CratMove implements IMove {
 
 	@Override
 	public boolean isBetterThan(double threshold) {
-		return comparisonPolicy.compare(gain, threshold);
+		if (biggerValueIsBetter)
+			return ((gain - threshold) > 1e-10);
+		return ((threshold - gain) > 1e-10);
 	}
 
 	@Override
@@ -84,22 +92,4 @@ public class CratMove implements IMove {
 		return to;
 	}
 
-	private interface ComparisonPolicy {
-		public boolean compare(double value1, double value2);
-	}
-
-	private class BiggerValueIsBetter implements ComparisonPolicy {
-		@Override
-		public boolean compare(double value1, double value2) {
-			return ((value1 - value2) > 1e-10);
-		}
-	}
-
-	private class SmallerValueIsBetter implements ComparisonPolicy {
-		@Override
-		public boolean compare(double value1, double value2) {
-			return ((value2 - value1) > 1e-10);
-		}
-	}
-
 }
@@ -8,6 +8,7 @@ import gr.uom.jcaliper.heuristics.IProblemState;
 import gr.uom.jcaliper.metrics.EvaluatedClass;
 import gr.uom.jcaliper.metrics.Metric;
 import gr.uom.jcaliper.system.CratClass;
+import gr.uom.jcaliper.system.EntitySet;
 import gr.uom.jcaliper.system.HashedClass;
 
 /**
@@ -17,6 +18,8 @@ public class CratState extends TreeMap<Long, EvaluatedClass> implements IProblem
 
 	protected final ComparisonPolicy comparisonPolicy;
 	protected double evaluation;
+	// XOR of the scrambled hashes of the classes, maintained by put and remove
+	private long hash;
 
 	public CratState(CraCase craCase, Metric metric) {
 		super();
@@ -70,6 +73,7 @@ public class CratState extends TreeMap<Long, EvaluatedClass> implements IProblem
 		comparisonPolicy = prototype.comparisonPolicy;
 		evaluation = prototype.evaluation;
 		putAll(prototype);
+		hash = prototype.hash;
 	}
 
 	@Override
@@ -89,12 +93,32 @@ public class CratState extends TreeMap<Long, EvaluatedClass> implements IProblem
 
 	@Override
 	public long getHash() {
-		long hash = 0;
-		for (EvaluatedClass cl : values())
-			hash = ((hash << 3) - hash) + cl.getHash(); // 7 * hash + classHash
 		return hash;
 	}
 
+	@Override
+	public EvaluatedClass put(Long classHash, EvaluatedClass evaluated) {
+		EvaluatedClass previous = super.put(classHash, evaluated);
+		if (previous != null)
+			hash ^= EntitySet.mix64(previous.getHash());
+		hash ^= EntitySet.mix64(evaluated.getHash());
+		return previous;
+	}
+
+	@Override
+	public EvaluatedClass remove(Object classHash) {
+		EvaluatedClass removed = super.remove(classHash);
+		if (removed != null)
+			hash ^= EntitySet.mix64(removed.getHash());
+		return removed;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		hash = 0;
+	}
+
 	private void updateEvaluation() {
 		evaluation = 0.0;
 		for (EvaluatedClass cl : values())
@@ -0,0 +1,319 @@
+package gr.uom.jcaliper.explorer;
+
+import java.util.Arrays;
+
+/**
+ * Gain buckets (Fiduccia-Mattheyses style) ordering the moves of a MoveStore
+ * <p>
+ * The gains are quantized into buckets of about 2% of their magnitude: gains closer to zero
+ * than MIN_MAGNITUDE share the middle bucket and gains beyond MAX_MAGNITUDE the outermost ones.
+ * Each bucket is an intrusive doubly linked list of move IDs, and a two level bitmap of the
+ * non-empty buckets finds the best bucket with a few word operations. Adding and removing a
+ * move are O(1). Each bucket caches its best move, so the best move is found in O(1) too, unless
+ * the cached one was removed: then its bucket is scanned once. Within a bucket the moves are
+ * ordered exactly as in the treap of the MoveStore, so both backends give the same searches; the
+ * last bucket sorted for select is kept sorted until it changes.
+ *
+ * @author Panagiotis Kouros
+ */
+final class GainBuckets {
+
+	private static final int NONE = MoveStore.NONE;
+	private static final int SUB_BITS = 5; // 32 buckets per power of two
+	private static final int MIN_EXPONENT = -40; // below the 1e-10 of the comparisons
+	private static final int MAX_EXPONENT = 4;
+	private static final int LEVELS = (MAX_EXPONENT - MIN_EXPONENT) << SUB_BITS;
+	private static final int ZERO_BUCKET = LEVELS;
+	private static final int BUCKETS = 2 * LEVELS + 1;
+	private static final double MIN_MAGNITUDE = Math.scalb(1.0, MIN_EXPONENT);
+	private static final int FIRST_LEVEL = (int) (Double.doubleToRawLongBits(MIN_MAGNITUDE)
+			>>> (52 - SUB_BITS));
+
+	private final MoveStore store;
+
+	// By move ID
+	private int[] next;
+	private int[] prev;
+	private int[] bucketOf;
+
+	// By bucket
+	private int[] head = new int[BUCKETS];
+	private int[] size = new int[BUCKETS];
+	private int[] best = new int[BUCKETS]; // NONE: not known
+	// Non-empty buckets, and non-zero words of the first bitmap
+	private long[] used = new long[(BUCKETS + 63) >>> 6];
+	private long[] usedWords = new long[(used.length + 63) >>> 6];
+	// The last bucket sorted by select, and its moves
+	private int sortedBucket = NONE;
+	private int[] sorted = new int[16];
+
+	// Constructors
+
+	GainBuckets(MoveStore store) {
+		this.store = store;
+		Arrays.fill(head, NONE);
+		Arrays.fill(best, NONE);
+	}
+
+	/**
+	 * Creates an independent copy of the buckets of another store
+	 */
+	GainBuckets(GainBuckets prototype, MoveStore store) {
+		this.store = store;
+		next = prototype.next.clone();
+		prev = prototype.prev.clone();
+		bucketOf = prototype.bucketOf.clone();
+		head = prototype.head.clone();
+		size = prototype.size.clone();
+		best = prototype.best.clone();
+		used = prototype.used.clone();
+		usedWords = prototype.usedWords.clone();
+	}
+
+	// Moves
+
+	void add(int move) {
+		int bucket = bucketOf(store.gain[move]);
+		bucketOf[move] = bucket;
+		if (bucket == sortedBucket)
+			sortedBucket = NONE;
+		prev[move] = NONE;
+		next[move] = head[bucket];
+		if (head[bucket] != NONE)
+			prev[head[bucket]] = move;
+		head[bucket] = move;
+		if (size[bucket]++ == 0) {
+			used[bucket >>> 6] |= 1L << bucket;
+			usedWords[bucket >>> 12] |= 1L << (bucket >>> 6);
+			best[bucket] = move;
+		} else if ((best[bucket] != NONE) && (store.compare(move, best[bucket]) < 0))
+			best[bucket] = move;
+	}
+
+	void remove(int move) {
+		int bucket = bucketOf[move];
+		if (bucket == sortedBucket)
+			sortedBucket = NONE;
+		if (prev[move] != NONE)
+			next[prev[move]] = next[move];
+		else
+			head[bucket] = next[move];
+		if (next[move] != NONE)
+			prev[next[move]] = prev[move];
+		if (--size[bucket] == 0) {
+			used[bucket >>> 6] &= ~(1L << bucket);
+			if (used[bucket >>> 6] == 0)
+				usedWords[bucket >>> 12] &= ~(1L << (bucket >>> 6));
+			best[bucket] = NONE;
+		} else if (best[bucket] == move)
+			best[bucket] = NONE;
+	}
+
+	void clear() {
+		Arrays.fill(head, NONE);
+		Arrays.fill(size, 0);
+		Arrays.fill(best, NONE);
+		Arrays.fill(used, 0L);
+		Arrays.fill(usedWords, 0L);
+		sortedBucket = NONE;
+	}
+
+	// Order statistics
+
+	/**
+	 * @return the best move, or NONE
+	 */
+	int first() {
+		int bucket = bucketBelow(BUCKETS);
+		return (bucket == NONE) ? NONE : bestOf(bucket);
+	}
+
+	/**
+	 * @param index
+	 *            0 &lt;= index &lt; size of the store
+	 * @return the move with the given number of better moves
+	 */
+	int select(int index) {
+		int bucket = bucketBelow(BUCKETS);
+		while (index >= size[bucket]) {
+			index -= size[bucket];
+			bucket = bucketBelow(bucket);
+		}
+		if (index == 0)
+			return bestOf(bucket);
+		if (bucket != sortedBucket) {
+			if (sorted.length < size[bucket])
+				sorted = new int[Math.max(size[bucket], sorted.length << 1)];
+			sortedMoves(bucket, sorted);
+			sortedBucket = bucket;
+		}
+		return sorted[index];
+	}
+
+	/**
+	 * @return the number of moves with gain better than the threshold
+	 */
+	int countBetterThan(double threshold) {
+		// the moves of the buckets above the one of threshold+epsilon are all better
+		double limit = store.biggerIsBetter ? threshold + 1e-10 : threshold - 1e-10;
+		int limitBucket = bucketOf(limit);
+		int count = 0;
+		int bucket = bucketBelow(BUCKETS);
+		while ((bucket != NONE) && (bucket > limitBucket)) {
+			count += size[bucket];
+			bucket = bucketBelow(bucket);
+		}
+		if (bucket == limitBucket)
+			for (int move = head[bucket]; move != NONE; move = next[move])
+				if (store.isBetter(store.gain[move], threshold))
+					count++;
+		return count;
+	}
+
+	/**
+	 * In order (best first) traversal of the moves. A bucket is sorted only if the traversal
+	 * goes past its best move.
+	 */
+	final class Cursor {
+		private int bucket;
+		private int[] moves = new int[16];
+		private int position = 0; // in the bucket
+		private boolean sorted = false;
+
+		Cursor() {
+			bucket = bucketBelow(BUCKETS);
+		}
+
+		boolean hasNext() {
+			return bucket != NONE;
+		}
+
+		int next() {
+			int move;
+			if (position == 0)
+				move = bestOf(bucket);
+			else {
+				if (!sorted) {
+					if (moves.length < size[bucket])
+						moves = new int[Math.max(size[bucket], moves.length << 1)];
+					sortedMoves(bucket, moves);
+					sorted = true;
+				}
+				move = moves[position];
+			}
+			if (++position == size[bucket]) {
+				bucket = bucketBelow(bucket);
+				position = 0;
+				sorted = false;
+			}
+			return move;
+		}
+	}
+
+	// Internals
+
+	/**
+	 * @return the bucket of a gain: the better the gain, the higher the bucket
+	 */
+	private int bucketOf(double gain) {
+		double score = store.biggerIsBetter ? gain : -gain;
+		double magnitude = Math.abs(score);
+		if (!(magnitude >= MIN_MAGNITUDE))
+			return ZERO_BUCKET;
+		// exponent and leading mantissa bits
+		int level = (int) (Double.doubleToRawLongBits(magnitude) >>> (52 - SUB_BITS))
+				- FIRST_LEVEL;
+		if (level >= LEVELS)
+			level = LEVELS - 1;
+		return (score > 0) ? ZERO_BUCKET + 1 + level : ZERO_BUCKET - 1 - level;
+	}
+
+	/**
+	 * @return the highest non-empty bucket below the given one, or NONE
+	 */
+	private int bucketBelow(int bucket) {
+		if (bucket <= 0)
+			return NONE;
+		int last = bucket - 1;
+		int word = last >>> 6;
+		long bits = used[word] & (-1L >>> (63 - (last & 63)));
+		if (bits != 0)
+			return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+		if (word == 0)
+			return NONE;
+		last = word - 1;
+		int group = last >>> 6;
+		long words = usedWords[group] & (-1L >>> (63 - (last & 63)));
+		while (words == 0) {
+			if (group == 0)
+				return NONE;
+			words = usedWords[--group];
+		}
+		word = (group << 6) + 63 - Long.numberOfLeadingZeros(words);
+		return (word << 6) + 63 - Long.numberOfLeadingZeros(used[word]);
+	}
+
+	private int bestOf(int bucket) {
+		if (best[bucket] == NONE) {
+			int bestMove = head[bucket];
+			for (int move = next[bestMove]; move != NONE; move = next[move])
+				if (store.compare(move, bestMove) < 0)
+					bestMove = move;
+			best[bucket] = bestMove;
+		}
+		return best[bucket];
+	}
+
+	/**
+	 * Copies the moves of a bucket, best first
+	 */
+	private void sortedMoves(int bucket, int[] moves) {
+		int length = 0;
+		for (int move = head[bucket]; move != NONE; move = next[move])
+			moves[length++] = move;
+		sort(moves, new int[length], 0, length);
+	}
+
+	/**
+	 * Merge sort of moves[from, to), using buffer
+	 */
+	private void sort(int[] moves, int[] buffer, int from, int to) {
+		if (to - from < 8) {
+			for (int i = from + 1; i < to; i++) {
+				int move = moves[i];
+				int j = i;
+				for (; (j > from) && (store.compare(move, moves[j - 1]) < 0); j--)
+					moves[j] = moves[j - 1];
+				moves[j] = move;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(moves, buffer, from, middle);
+		sort(moves, buffer, middle, to);
+		if (store.compare(moves[middle - 1], moves[middle]) <= 0)
+			return;
+		System.arraycopy(moves, from, buffer, from, to - from);
+		int i = from, j = middle;
+		for (int k = from; k < to; k++)
+			if ((j >= to) || ((i < middle) && (store.compare(buffer[i], buffer[j]) <= 0)))
+				moves[k] = buffer[i++];
+			else
+				moves[k] = buffer[j++];
+	}
+
+	// Memory
+
+	void allocateMoves(int capacity) {
+		if (next == null) {
+			next = new int[capacity];
+			prev = new int[capacity];
+			bucketOf = new int[capacity];
+			return;
+		}
+		next = Arrays.copyOf(next, capacity);
+		prev = Arrays.copyOf(prev, capacity);
+		bucketOf = Arrays.copyOf(bucketOf, capacity);
+	}
+
+}
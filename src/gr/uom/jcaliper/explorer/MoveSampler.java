@@ -0,0 +1,33 @@
+package gr.uom.jcaliper.explorer;
+
+import gr.uom.jcaliper.heuristics.IMove;
+import gr.uom.jcaliper.heuristics.RandomMoveGenerator;
+
+/**
+ * Random move generator kept up to date by the Navigator
+ * <p>
+ * Samples the dense array of the move store of the Navigator, where a removed move is replaced
+ * by the last one (swap-remove). Adding, removing and sampling are all O(1), and only the picked
+ * move is created as a CratMove.
+ *
+ * @author Panagiotis Kouros
+ */
+class MoveSampler extends RandomMoveGenerator {
+
+	private final Navigator navigator;
+
+	MoveSampler(Navigator navigator) {
+		this.navigator = navigator;
+	}
+
+	@Override
+	public int getNumOfMoves() {
+		return navigator.store.size();
+	}
+
+	@Override
+	protected IMove getMove(int index) {
+		return navigator.view(navigator.store.moveAt(index));
+	}
+
+}
@@ -0,0 +1,476 @@
+package gr.uom.jcaliper.explorer;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage of the feasible moves of a Navigator
+ * <p>
+ * A move is an int ID indexing parallel primitive arrays (moving entity, origin and target class
+ * slots, gain). The same IDs are the nodes of an intrusive treap that keeps the moves sorted
+ * (best first) with subtree sizes for rank/select, of two doubly linked lists per class slot
+ * (outgoing and incoming moves), and of a dense array for O(1) random sampling. Adding or
+ * removing a move allocates nothing, once the arrays have grown. Instead of the treap, the moves
+ * may be ordered by GainBuckets, in the same order.
+ *
+ * @author Panagiotis Kouros
+ */
+final class MoveStore {
+
+	static final int NONE = -1;
+
+	final boolean biggerIsBetter;
+	// Orders the moves instead of the treap (null: the treap is used)
+	private final GainBuckets buckets;
+
+	// Move fields, by move ID
+	int[] moving;
+	int[] from;
+	int[] to;
+	double[] gain;
+
+	// Treap, by move ID
+	private int[] left;
+	private int[] right;
+	private int[] subtreeSize;
+	private int[] priority;
+	private int root = NONE;
+	private int seed = 0x2545F491;
+
+	// Adjacency lists, by move ID and by class slot
+	private int[] nextOut;
+	private int[] prevOut;
+	private int[] nextIn;
+	private int[] prevIn;
+	private int[] outHead = new int[16];
+	private int[] inHead = new int[16];
+	// Class hash by class slot (breaks ties between equal gains)
+	private long[] classHash = new long[16];
+
+	// Dense array of moves for random sampling
+	private int[] dense;
+	private int[] densePos;
+	private int count = 0;
+
+	// Free move IDs
+	private int[] freeIds;
+	private int freeCount = 0;
+	private int allocated = 0;
+
+	// Constructors
+
+	/**
+	 * @param biggerIsBetter
+	 *            true if bigger gains are better
+	 * @param gainBuckets
+	 *            true to order the moves by gain buckets instead of the treap
+	 */
+	MoveStore(boolean biggerIsBetter, boolean gainBuckets) {
+		this.biggerIsBetter = biggerIsBetter;
+		buckets = gainBuckets ? new GainBuckets(this) : null;
+		allocateMoves(256);
+		Arrays.fill(outHead, NONE);
+		Arrays.fill(inHead, NONE);
+	}
+
+	/**
+	 * Creates an independent copy of a store
+	 */
+	MoveStore(MoveStore prototype) {
+		biggerIsBetter = prototype.biggerIsBetter;
+		buckets = (prototype.buckets != null) ? new GainBuckets(prototype.buckets, this) : null;
+		moving = prototype.moving.clone();
+		from = prototype.from.clone();
+		to = prototype.to.clone();
+		gain = prototype.gain.clone();
+		left = prototype.left.clone();
+		right = prototype.right.clone();
+		subtreeSize = prototype.subtreeSize.clone();
+		priority = prototype.priority.clone();
+		root = prototype.root;
+		seed = prototype.seed;
+		nextOut = prototype.nextOut.clone();
+		prevOut = prototype.prevOut.clone();
+		nextIn = prototype.nextIn.clone();
+		prevIn = prototype.prevIn.clone();
+		outHead = prototype.outHead.clone();
+		inHead = prototype.inHead.clone();
+		classHash = prototype.classHash.clone();
+		dense = prototype.dense.clone();
+		densePos = prototype.densePos.clone();
+		count = prototype.count;
+		freeIds = prototype.freeIds.clone();
+		freeCount = prototype.freeCount;
+		allocated = prototype.allocated;
+	}
+
+	// Classes
+
+	/**
+	 * Prepares a class slot for new moves
+	 */
+	void setClass(int classSlot, long hash) {
+		if (classSlot >= classHash.length) {
+			int length = Math.max(classSlot + 1, classHash.length << 1);
+			int oldLength = classHash.length;
+			classHash = Arrays.copyOf(classHash, length);
+			outHead = Arrays.copyOf(outHead, length);
+			inHead = Arrays.copyOf(inHead, length);
+			Arrays.fill(outHead, oldLength, length, NONE);
+			Arrays.fill(inHead, oldLength, length, NONE);
+		}
+		classHash[classSlot] = hash;
+		outHead[classSlot] = NONE;
+		inHead[classSlot] = NONE;
+	}
+
+	int firstOutgoing(int classSlot) {
+		return outHead[classSlot];
+	}
+
+	int nextOutgoing(int move) {
+		return nextOut[move];
+	}
+
+	int firstIncoming(int classSlot) {
+		return inHead[classSlot];
+	}
+
+	int nextIncoming(int move) {
+		return nextIn[move];
+	}
+
+	// Moves
+
+	int size() {
+		return count;
+	}
+
+	int add(int movingId, int fromSlot, int toSlot, double moveGain) {
+		int move = (freeCount > 0) ? freeIds[--freeCount] : newId();
+		moving[move] = movingId;
+		from[move] = fromSlot;
+		to[move] = toSlot;
+		gain[move] = moveGain;
+		if (buckets != null)
+			buckets.add(move);
+		else {
+			// treap
+			left[move] = NONE;
+			right[move] = NONE;
+			subtreeSize[move] = 1;
+			priority[move] = nextPriority();
+			root = insert(root, move);
+		}
+		// adjacency lists
+		prevOut[move] = NONE;
+		nextOut[move] = outHead[fromSlot];
+		if (outHead[fromSlot] != NONE)
+			prevOut[outHead[fromSlot]] = move;
+		outHead[fromSlot] = move;
+		prevIn[move] = NONE;
+		nextIn[move] = inHead[toSlot];
+		if (inHead[toSlot] != NONE)
+			prevIn[inHead[toSlot]] = move;
+		inHead[toSlot] = move;
+		// dense array
+		densePos[move] = count;
+		dense[count++] = move;
+		return move;
+	}
+
+	void remove(int move) {
+		if (buckets != null)
+			buckets.remove(move);
+		else
+			root = delete(root, move);
+		// adjacency lists
+		if (prevOut[move] != NONE)
+			nextOut[prevOut[move]] = nextOut[move];
+		else
+			outHead[from[move]] = nextOut[move];
+		if (nextOut[move] != NONE)
+			prevOut[nextOut[move]] = prevOut[move];
+		if (prevIn[move] != NONE)
+			nextIn[prevIn[move]] = nextIn[move];
+		else
+			inHead[to[move]] = nextIn[move];
+		if (nextIn[move] != NONE)
+			prevIn[nextIn[move]] = prevIn[move];
+		// dense array: swap-remove
+		int pos = densePos[move];
+		int last = dense[--count];
+		dense[pos] = last;
+		densePos[last] = pos;
+		// recycle the ID
+		freeIds[freeCount++] = move;
+	}
+
+	void clear() {
+		root = NONE;
+		count = 0;
+		freeCount = 0;
+		allocated = 0;
+		Arrays.fill(outHead, NONE);
+		Arrays.fill(inHead, NONE);
+		if (buckets != null)
+			buckets.clear();
+	}
+
+	/**
+	 * @param index
+	 *            0 &lt;= index &lt; size()
+	 * @return the move at the given position of the dense array
+	 */
+	int moveAt(int index) {
+		return dense[index];
+	}
+
+	// Order statistics
+
+	/**
+	 * @return the best move, or NONE
+	 */
+	int first() {
+		if (buckets != null)
+			return buckets.first();
+		int node = root;
+		if (node == NONE)
+			return NONE;
+		while (left[node] != NONE)
+			node = left[node];
+		return node;
+	}
+
+	/**
+	 * @param index
+	 *            0 &lt;= index &lt; size()
+	 * @return the move with the given number of better moves
+	 */
+	int select(int index) {
+		if (buckets != null)
+			return buckets.select(index);
+		int node = root;
+		while (true) {
+			int leftSize = sizeOf(left[node]);
+			if (index < leftSize)
+				node = left[node];
+			else if (index > leftSize) {
+				index -= leftSize + 1;
+				node = right[node];
+			} else
+				return node;
+		}
+	}
+
+	/**
+	 * @return the number of moves with gain better than the threshold
+	 */
+	int countBetterThan(double threshold) {
+		if (buckets != null)
+			return buckets.countBetterThan(threshold);
+		int length = 0;
+		int node = root;
+		while (node != NONE)
+			if (isBetter(gain[node], threshold)) {
+				length += sizeOf(left[node]) + 1;
+				node = right[node];
+			} else
+				node = left[node];
+		return length;
+	}
+
+	/**
+	 * In order (best first) traversal of the moves
+	 */
+	final class Cursor {
+		private final GainBuckets.Cursor bucketCursor;
+		private int[] stack = new int[32];
+		private int depth = 0;
+
+		Cursor() {
+			if (buckets != null)
+				bucketCursor = buckets.new Cursor();
+			else {
+				bucketCursor = null;
+				pushLeft(root);
+			}
+		}
+
+		boolean hasNext() {
+			if (bucketCursor != null)
+				return bucketCursor.hasNext();
+			return depth > 0;
+		}
+
+		int next() {
+			if (bucketCursor != null)
+				return bucketCursor.next();
+			int node = stack[--depth];
+			pushLeft(right[node]);
+			return node;
+		}
+
+		private void pushLeft(int node) {
+			for (; node != NONE; node = left[node]) {
+				if (depth == stack.length)
+					stack = Arrays.copyOf(stack, depth << 1);
+				stack[depth++] = node;
+			}
+		}
+	}
+
+	// Treap internals
+
+	boolean isBetter(double value1, double value2) {
+		if (biggerIsBetter)
+			return (value1 - value2) > 1e-10;
+		return (value2 - value1) > 1e-10;
+	}
+
+	/**
+	 * The order of moves: better gain first, then by origin hash, target hash and moving entity
+	 * <p>
+	 * Gains are compared exactly: an epsilon comparison is not transitive, and with many nearly
+	 * equal gains the treap could not find a move again to remove it.
+	 */
+	int compare(int move1, int move2) {
+		if (gain[move1] != gain[move2])
+			return ((gain[move1] > gain[move2]) == biggerIsBetter) ? -1 : 1;
+		long hash1 = classHash[from[move1]];
+		long hash2 = classHash[from[move2]];
+		if (hash1 != hash2)
+			return (hash1 < hash2) ? -1 : 1;
+		hash1 = classHash[to[move1]];
+		hash2 = classHash[to[move2]];
+		if (hash1 != hash2)
+			return (hash1 < hash2) ? -1 : 1;
+		if (moving[move1] != moving[move2])
+			return (moving[move1] < moving[move2]) ? -1 : 1;
+		return 0;
+	}
+
+	private int sizeOf(int node) {
+		return (node == NONE) ? 0 : subtreeSize[node];
+	}
+
+	private void update(int node) {
+		subtreeSize[node] = sizeOf(left[node]) + sizeOf(right[node]) + 1;
+	}
+
+	private int nextPriority() {
+		// xorshift: deterministic, well spread priorities
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+
+	private int insert(int tree, int node) {
+		if (tree == NONE)
+			return node;
+		if (priority[node] > priority[tree]) {
+			split(tree, node);
+			update(node);
+			return node;
+		}
+		if (compare(node, tree) < 0)
+			left[tree] = insert(left[tree], node);
+		else
+			right[tree] = insert(right[tree], node);
+		update(tree);
+		return tree;
+	}
+
+	/**
+	 * Splits a tree around a new node, into its left and right subtrees
+	 */
+	private void split(int tree, int node) {
+		if (tree == NONE) {
+			left[node] = NONE;
+			right[node] = NONE;
+		} else if (compare(tree, node) < 0) {
+			split(right[tree], node);
+			right[tree] = left[node];
+			update(tree);
+			left[node] = tree;
+		} else {
+			split(left[tree], node);
+			left[tree] = right[node];
+			update(tree);
+			right[node] = tree;
+		}
+	}
+
+	private int delete(int tree, int node) {
+		if (tree == node)
+			return merge(left[tree], right[tree]);
+		if (compare(node, tree) < 0)
+			left[tree] = delete(left[tree], node);
+		else
+			right[tree] = delete(right[tree], node);
+		update(tree);
+		return tree;
+	}
+
+	private int merge(int tree1, int tree2) {
+		if (tree1 == NONE)
+			return tree2;
+		if (tree2 == NONE)
+			return tree1;
+		if (priority[tree1] > priority[tree2]) {
+			right[tree1] = merge(right[tree1], tree2);
+			update(tree1);
+			return tree1;
+		}
+		left[tree2] = merge(tree1, left[tree2]);
+		update(tree2);
+		return tree2;
+	}
+
+	// Memory
+
+	private int newId() {
+		if (allocated == moving.length)
+			allocateMoves(allocated << 1);
+		return allocated++;
+	}
+
+	private void allocateMoves(int capacity) {
+		if (buckets != null)
+			buckets.allocateMoves(capacity);
+		if (moving == null) {
+			moving = new int[capacity];
+			from = new int[capacity];
+			to = new int[capacity];
+			gain = new double[capacity];
+			left = new int[capacity];
+			right = new int[capacity];
+			subtreeSize = new int[capacity];
+			priority = new int[capacity];
+			nextOut = new int[capacity];
+			prevOut = new int[capacity];
+			nextIn = new int[capacity];
+			prevIn = new int[capacity];
+			dense = new int[capacity];
+			densePos = new int[capacity];
+			freeIds = new int[capacity];
+			return;
+		}
+		moving = Arrays.copyOf(moving, capacity);
+		from = Arrays.copyOf(from, capacity);
+		to = Arrays.copyOf(to, capacity);
+		gain = Arrays.copyOf(gain, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		subtreeSize = Arrays.copyOf(subtreeSize, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+		nextOut = Arrays.copyOf(nextOut, capacity);
+		prevOut = Arrays.copyOf(prevOut, capacity);
+		nextIn = Arrays.copyOf(nextIn, capacity);
+		prevIn = Arrays.copyOf(prevIn, capacity);
+		dense = Arrays.copyOf(dense, capacity);
+		densePos = Arrays.copyOf(densePos, capacity);
+		freeIds = Arrays.copyOf(freeIds, capacity);
+	}
+
+}
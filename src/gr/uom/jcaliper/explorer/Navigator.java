@@ -2,33 +2,90 @@ package gr.uom.jcaliper.explorer;
 
 import gr.uom.jcaliper.heuristics.RandomMoveGenerator;
 import gr.uom.jcaliper.metrics.EvaluatedClass;
+import gr.uom.jcaliper.metrics.GainTable;
+import gr.uom.jcaliper.preferences.RunConfiguration;
+import gr.uom.jcaliper.system.IEntityPool;
 
+import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
+ * The feasible moves of the current state
+ * <p>
+ * The neighbourhood of a new class is generated on demand from two indexes: the class of each
+ * movable entity, and the classes welcoming each entity (the classes whose entry gains contain
+ * it), sorted by class hash. So adding a class visits only the classes related to its entities,
+ * not all the classes of the state.
+ * <p>
+ * Optionally, only k candidate target classes are kept per movable entity: the non-empty
+ * welcoming classes with the highest Jaccard affinity to the entity (and the empty class). The
+ * candidate lists are updated while classes are added and removed, so a new class creates O(k)
+ * moves per entity. The explorer widens k when the search stagnates.
+ * <p>
+ * For the searches that scan the moves entity by entity, the best move of each entity is kept
+ * in a second ordered store, built when first asked for. An entity is not looked at again
+ * (its don't-look bit stays set) until its best move is removed, i.e. until one of the classes
+ * it may leave or enter changes; then its moves are scanned once, at the next request.
+ *
  * @author Panagiotis Kouros
  */
 public class Navigator {
 
 	final ComparisonPolicy comparison;
 	final boolean biggerValueIsBetter;
-	private TreeMap<Long, EvaluatedClass> classes = new TreeMap<Long, EvaluatedClass>();
 	private EvaluatedClass empty;
-	protected TreeSet<CratMove> moves = new TreeSet<CratMove>(new MoveComparator());
+	// The moves, as primitive records. CratMove objects are created only when asked for.
+	final MoveStore store;
+	// Class slots of the move store: class hash -> slot -> class
+	private HashMap<Long, Integer> slotOf = new HashMap<Long, Integer>();
+	private EvaluatedClass[] classOfSlot = new EvaluatedClass[16];
+	private int[] freeSlots = new int[16];
+	private int freeSlotCount = 0;
+	private int slotCount = 0;
+	// Class slot of each movable entity, and slots of the classes welcoming each entity
+	private int[] slotOfEntity = new int[16];
+	private int[][] welcomingSlots = new int[16][];
+	private int[] welcomingCount = new int[16];
+	// Candidate lists (0 = all classes): the affinity of each welcoming class, and the worst
+	// kept class of each entity (NONE: all are kept)
+	private final IEntityPool entities;
+	private final int initialCandidates;
+	private int candidates;
+	private double[][] welcomingAffinity = new double[16][];
+	private int[] cutoffSlot = new int[16];
+	private double[] cutoffAffinity = new double[16];
+	private double[] topAffinity = new double[0];
+	private long[] topHash = new long[0];
+	private int[] topSlot = new int[0];
+	// Best move of each entity (null: not asked for yet), and the entities to look at again
+	private MoveStore entityBests;
+	private int[] bestOfEntity = new int[16];
+	private int[] recordOfEntity = new int[16];
+	private boolean[] lookAgain = new boolean[16];
+	private int[] lookAgainList = new int[16];
+	private int lookAgainCount = 0;
+	private MoveSampler sampler = new MoveSampler(this);
 	private double sumOfGain = 0.0;
 	private double sumOfGain2 = 0.0;
 	private double minDeterioration = 0.0;
 	private double maxDeterioration = 0.0;
 	private int improvingMoves = 0;
-	private Random rand = new Random(0);
 
 	public Navigator(boolean biggerValueIsBetter, EvaluatedClass empty) {
+		this(biggerValueIsBetter, empty, null);
+	}
+
+	/**
+	 * @param entities
+	 *            the entities of the classes, needed for the candidate lists (null: all the
+	 *            welcoming classes are kept)
+	 */
+	public Navigator(boolean biggerValueIsBetter, EvaluatedClass empty, IEntityPool entities) {
 		this.biggerValueIsBetter = biggerValueIsBetter;
 		if (biggerValueIsBetter) {
 			comparison = new BiggerValueIsBetter();
@@ -39,145 +96,669 @@ public class Navigator {
 			minDeterioration = 1e10;
 			maxDeterioration = -1e10;
 		}
+		RunConfiguration configuration = RunConfiguration.getCurrent();
+		store = new MoveStore(biggerValueIsBetter, configuration.isGainBuckets());
+		this.entities = entities;
+		initialCandidates = (entities != null) ? configuration.getCandidateClasses() : 0;
+		candidates = initialCandidates;
 
 		this.empty = empty;
-		classes.put(empty.getHash(), empty);
+		Arrays.fill(slotOfEntity, MoveStore.NONE);
+		Arrays.fill(cutoffSlot, MoveStore.NONE);
+		indexEntries(allocateSlot(empty));
+	}
+
+	/**
+	 * Creates an independent copy of a navigator, without re-evaluating its moves
+	 */
+	public Navigator(Navigator prototype) {
+		biggerValueIsBetter = prototype.biggerValueIsBetter;
+		if (biggerValueIsBetter)
+			comparison = new BiggerValueIsBetter();
+		else
+			comparison = new SmallerValueIsBetter();
+		store = new MoveStore(prototype.store);
+		empty = prototype.empty;
+		slotOf.putAll(prototype.slotOf);
+		classOfSlot = prototype.classOfSlot.clone();
+		freeSlots = prototype.freeSlots.clone();
+		freeSlotCount = prototype.freeSlotCount;
+		slotCount = prototype.slotCount;
+		slotOfEntity = prototype.slotOfEntity.clone();
+		welcomingSlots = new int[prototype.welcomingSlots.length][];
+		for (int entityId = 0; entityId < welcomingSlots.length; entityId++)
+			if (prototype.welcomingSlots[entityId] != null)
+				welcomingSlots[entityId] = prototype.welcomingSlots[entityId].clone();
+		welcomingCount = prototype.welcomingCount.clone();
+		entities = prototype.entities;
+		initialCandidates = prototype.initialCandidates;
+		candidates = prototype.candidates;
+		welcomingAffinity = new double[prototype.welcomingAffinity.length][];
+		for (int entityId = 0; entityId < welcomingAffinity.length; entityId++)
+			if (prototype.welcomingAffinity[entityId] != null)
+				welcomingAffinity[entityId] = prototype.welcomingAffinity[entityId].clone();
+		cutoffSlot = prototype.cutoffSlot.clone();
+		cutoffAffinity = prototype.cutoffAffinity.clone();
+		// the best moves of the entities are found again if asked for
+		bestOfEntity = new int[slotOfEntity.length];
+		recordOfEntity = new int[slotOfEntity.length];
+		lookAgain = new boolean[slotOfEntity.length];
+		sumOfGain = prototype.sumOfGain;
+		sumOfGain2 = prototype.sumOfGain2;
+		minDeterioration = prototype.minDeterioration;
+		maxDeterioration = prototype.maxDeterioration;
+		improvingMoves = prototype.improvingMoves;
 	}
 
 	public void newCurrentState(CratState state) {
-		classes.clear();
-		moves.clear();
+		candidates = initialCandidates;
+		reset(state.values());
+	}
+
+	private void reset(Collection<EvaluatedClass> classes) {
+		clear();
 		sumOfGain = 0.0;
 		sumOfGain2 = 0.0;
 		improvingMoves = 0;
-		classes.put(empty.getHash(), empty);
-		for (EvaluatedClass cl : state.values())
+		indexEntries(allocateSlot(empty));
+		for (EvaluatedClass cl : classes)
 			addClass(cl);
 	}
 
+	/**
+	 * Doubles the candidate target classes per entity (up to all)
+	 *
+	 * @return false if all the welcoming classes were already kept
+	 */
+	public boolean widenCandidates() {
+		if (candidates == 0)
+			return false;
+		// no entity is welcomed by more classes than the slots
+		setCandidates(((candidates << 1) < slotCount) ? candidates << 1 : 0);
+		return true;
+	}
+
+	/**
+	 * Restores the initial candidate target classes per entity
+	 *
+	 * @return false if they were not widened
+	 */
+	public boolean narrowCandidates() {
+		if (candidates == initialCandidates)
+			return false;
+		setCandidates(initialCandidates);
+		return true;
+	}
+
+	/**
+	 * @return the candidate target classes per entity (0 = all)
+	 */
+	public int getCandidateClasses() {
+		return candidates;
+	}
+
+	/**
+	 * Changes the candidate target classes per entity. Only the moves to the classes entering
+	 * or leaving the candidate lists are added or removed.
+	 */
+	private void setCandidates(int newCandidates) {
+		candidates = newCandidates;
+		for (int entId = 0; entId < welcomingCount.length; entId++) {
+			int oldCutoff = cutoffSlot[entId];
+			double oldAffinity = cutoffAffinity[entId];
+			if (candidates > 0)
+				updateCutoff(entId);
+			else
+				cutoffSlot[entId] = MoveStore.NONE;
+			int originSlot = slotOfEntity[entId];
+			if ((originSlot == MoveStore.NONE) || (oldCutoff == cutoffSlot[entId]))
+				continue;
+			long oldHash = (oldCutoff != MoveStore.NONE) ? classOfSlot[oldCutoff].getHash() : 0;
+			int[] row = welcomingSlots[entId];
+			double[] affinities = welcomingAffinity[entId];
+			for (int position = 0; position < welcomingCount[entId]; position++) {
+				EvaluatedClass cl = classOfSlot[row[position]];
+				if (cl.size() == 0)
+					continue;
+				boolean wasKept = (oldCutoff == MoveStore.NONE)
+						|| !isWorse(affinities[position], cl.getHash(), oldAffinity, oldHash);
+				boolean isKept = isCandidate(entId, row[position], affinities[position]);
+				if (isKept && !wasKept)
+					addMove(entId, originSlot, row[position]);
+				else if (wasKept && !isKept)
+					removeMove(entId, originSlot, row[position]);
+			}
+		}
+	}
+
 	public void removeClass(EvaluatedClass removed) {
 		if (removed.size() == 0)
 			return; // moves to empty class should be always available
-		Iterator<CratMove> it = moves.iterator();
-		while (it.hasNext()) {
-			CratMove move = it.next();
-			if ((move.from == removed) || (move.to == removed)) {
-				removeMove(move); // in fact: prepare to remove
-				it.remove();
+		long hash = removed.getHash();
+		Integer slot = slotOf.remove(hash);
+		if (slot != null) {
+			// only the moves of the removed class are visited
+			int move = store.firstOutgoing(slot);
+			while (move != MoveStore.NONE) {
+				int next = store.nextOutgoing(move);
+				removeMove(move);
+				move = next;
 			}
+			move = store.firstIncoming(slot);
+			while (move != MoveStore.NONE) {
+				int next = store.nextIncoming(move);
+				removeMove(move);
+				move = next;
+			}
+			GainTable exits = removed.getExitGains();
+			for (int i = 0; i < exits.size(); i++)
+				if (slotOfEntity[exits.keyAt(i)] == slot)
+					slotOfEntity[exits.keyAt(i)] = MoveStore.NONE;
+			GainTable entries = removed.getEntryGains();
+			for (int i = 0; i < entries.size(); i++) {
+				int entId = entries.keyAt(i);
+				double affinity = removeWelcoming(entId, slot);
+				boolean kept = (candidates > 0) && isCandidate(entId, slot, affinity);
+				if (kept && (cutoffSlot[entId] != MoveStore.NONE)) {
+					// the best of the other classes takes its place
+					updateCutoff(entId);
+					int promoted = cutoffSlot[entId];
+					int originSlot = slotOfEntity[entId];
+					if ((promoted != MoveStore.NONE) && (originSlot != MoveStore.NONE))
+						addMove(entId, originSlot, promoted);
+				}
+			}
+			classOfSlot[slot] = null;
+			if (freeSlotCount == freeSlots.length)
+				freeSlots = Arrays.copyOf(freeSlots, freeSlotCount << 1);
+			freeSlots[freeSlotCount++] = slot;
 		}
-		classes.remove(removed.getHash());
 	}
 
 	public void addClass(EvaluatedClass newClass) {
 		if (newClass.size() == 0)
 			return; // moves to empty class are already updated
+		int newSlot = allocateSlot(newClass);
 		boolean oneMemberClass = (newClass.size() == 1);
-		for (int entId : newClass.candidatesForExit())
-			for (EvaluatedClass target : classes.values()) {
+		GainTable exits = newClass.getExitGains();
+		for (int i = 0; i < exits.size(); i++) {
+			int entId = exits.keyAt(i);
+			double exitGain = exits.valueAt(i);
+			// the classes welcoming the entity, by hash
+			int count = getWelcomingCount(entId);
+			int[] targetSlots = (count > 0) ? welcomingSlots[entId] : null;
+			double[] affinities = (count > 0) ? welcomingAffinity[entId] : null;
+			for (int k = 0; k < count; k++) {
+				EvaluatedClass target = classOfSlot[targetSlots[k]];
 				// Don't add moves from oneMemberClass to empty class
 				boolean targetIsEmpty = (target.size() == 0);
-				if (target.candidatesForEntry().contains(entId)
-						&& (!oneMemberClass || !targetIsEmpty)) {
-					CratMove move = new CratMove(0, entId, newClass, target, biggerValueIsBetter);
-					addMove(move);
+				if ((!oneMemberClass || !targetIsEmpty)
+						&& ((candidates == 0) || isCandidate(entId, targetSlots[k],
+								affinities[k]))) {
+					GainTable targetEntries = target.getEntryGains();
+					int index = targetEntries.indexOf(entId);
+					if (index >= 0)
+						addMove(entId, newSlot, targetSlots[k], exitGain
+								+ targetEntries.valueAt(index));
 				}
 			}
-		for (int entId : newClass.candidatesForEntry())
-			for (EvaluatedClass origin : classes.values())
-				if (origin.candidatesForExit().contains(entId)) {
-					CratMove move = new CratMove(0, entId, origin, newClass, biggerValueIsBetter);
-					addMove(move);
-				}
-		classes.put(newClass.getHash(), newClass);
+		}
+		GainTable entries = newClass.getEntryGains();
+		for (int i = 0; i < entries.size(); i++) {
+			int entId = entries.keyAt(i);
+			double affinity = addWelcoming(entId, newSlot);
+			// the class of the entity, if it is movable
+			int originSlot = slotOfEntity[entId];
+			if (candidates > 0) {
+				int dropped = admit(entId, newSlot, affinity);
+				if (originSlot == MoveStore.NONE)
+					continue;
+				if (dropped != MoveStore.NONE)
+					removeMove(entId, originSlot, dropped);
+				if (!isCandidate(entId, newSlot, affinity))
+					continue;
+			}
+			if (originSlot != MoveStore.NONE) {
+				GainTable originExits = classOfSlot[originSlot].getExitGains();
+				int index = originExits.indexOf(entId);
+				if (index >= 0)
+					addMove(entId, originSlot, newSlot, originExits.valueAt(index)
+							+ entries.valueAt(i));
+			}
+		}
+		for (int i = 0; i < exits.size(); i++) {
+			int entId = exits.keyAt(i);
+			ensureEntity(entId);
+			slotOfEntity[entId] = newSlot;
+		}
+	}
+
+	// Entity indexes
+
+	private void indexEntries(int slot) {
+		GainTable entries = classOfSlot[slot].getEntryGains();
+		for (int i = 0; i < entries.size(); i++)
+			addWelcoming(entries.keyAt(i), slot);
+	}
+
+	private int getWelcomingCount(int entityId) {
+		return (entityId < welcomingCount.length) ? welcomingCount[entityId] : 0;
+	}
+
+	/**
+	 * Inserts a class slot in the welcoming classes of an entity, keeping them sorted by hash
+	 *
+	 * @return the affinity of the class to the entity (0 without candidate lists)
+	 */
+	private double addWelcoming(int entityId, int slot) {
+		ensureEntity(entityId);
+		int[] row = welcomingSlots[entityId];
+		double[] affinities = welcomingAffinity[entityId];
+		int count = welcomingCount[entityId];
+		if (row == null) {
+			row = welcomingSlots[entityId] = new int[4];
+			affinities = welcomingAffinity[entityId] = new double[4];
+		} else if (count == row.length) {
+			row = welcomingSlots[entityId] = Arrays.copyOf(row, count << 1);
+			affinities = welcomingAffinity[entityId] = Arrays.copyOf(affinities, count << 1);
+		}
+		EvaluatedClass cl = classOfSlot[slot];
+		long hash = cl.getHash();
+		int position = count;
+		for (; (position > 0) && (classOfSlot[row[position - 1]].getHash() > hash); position--) {
+			row[position] = row[position - 1];
+			affinities[position] = affinities[position - 1];
+		}
+		row[position] = slot;
+		affinities[position] = ((initialCandidates > 0) && (cl.size() > 0)) ? entities.getEntity(
+				entityId).getEntitySet().jaccardSimilarityIndex(cl) : 0.0;
+		welcomingCount[entityId] = count + 1;
+		return affinities[position];
+	}
+
+	/**
+	 * @return the affinity of the removed class to the entity
+	 */
+	private double removeWelcoming(int entityId, int slot) {
+		int[] row = welcomingSlots[entityId];
+		double[] affinities = welcomingAffinity[entityId];
+		int count = welcomingCount[entityId];
+		for (int position = 0; position < count; position++)
+			if (row[position] == slot) {
+				double affinity = affinities[position];
+				System.arraycopy(row, position + 1, row, position, count - position - 1);
+				System.arraycopy(affinities, position + 1, affinities, position, count - position
+						- 1);
+				welcomingCount[entityId] = count - 1;
+				return affinity;
+			}
+		return 0.0;
+	}
+
+	// Candidate lists
+
+	/**
+	 * @return true if a welcoming class of an entity, of the given affinity, is one of its
+	 *         candidate target classes
+	 */
+	private boolean isCandidate(int entityId, int slot, double affinity) {
+		EvaluatedClass cl = classOfSlot[slot];
+		int cutoff = cutoffSlot[entityId];
+		if ((cutoff == MoveStore.NONE) || (cl.size() == 0))
+			return true;
+		return !isWorse(affinity, cl.getHash(), cutoffAffinity[entityId],
+				classOfSlot[cutoff].getHash());
+	}
+
+	/**
+	 * Updates the candidate classes of an entity after a new class welcomes it
+	 *
+	 * @return the slot of the class that is no longer a candidate, or NONE
+	 */
+	private int admit(int entityId, int slot, double affinity) {
+		EvaluatedClass cl = classOfSlot[slot];
+		int cutoff = cutoffSlot[entityId];
+		if (cl.size() == 0)
+			return MoveStore.NONE;
+		if (cutoff == MoveStore.NONE) {
+			updateCutoff(entityId); // the list may be full now
+			return MoveStore.NONE;
+		}
+		if (isWorse(affinity, cl.getHash(), cutoffAffinity[entityId],
+				classOfSlot[cutoff].getHash()))
+			return MoveStore.NONE;
+		updateCutoff(entityId);
+		return cutoff;
+	}
+
+	/**
+	 * Finds the worst of the k best non-empty welcoming classes of an entity
+	 */
+	private void updateCutoff(int entityId) {
+		if (topAffinity.length < candidates) {
+			topAffinity = new double[candidates];
+			topHash = new long[candidates];
+			topSlot = new int[candidates];
+		}
+		int[] row = welcomingSlots[entityId];
+		double[] affinities = welcomingAffinity[entityId];
+		int count = welcomingCount[entityId];
+		int kept = 0;
+		for (int position = 0; position < count; position++) {
+			EvaluatedClass cl = classOfSlot[row[position]];
+			if (cl.size() == 0)
+				continue;
+			double affinity = affinities[position];
+			long hash = cl.getHash();
+			if ((kept == candidates)
+					&& isWorse(affinity, hash, topAffinity[kept - 1], topHash[kept - 1]))
+				continue;
+			// insert, best first
+			int i = (kept < candidates) ? kept++ : kept - 1;
+			for (; (i > 0) && isWorse(topAffinity[i - 1], topHash[i - 1], affinity, hash); i--) {
+				topAffinity[i] = topAffinity[i - 1];
+				topHash[i] = topHash[i - 1];
+				topSlot[i] = topSlot[i - 1];
+			}
+			topAffinity[i] = affinity;
+			topHash[i] = hash;
+			topSlot[i] = row[position];
+		}
+		if (kept < candidates)
+			cutoffSlot[entityId] = MoveStore.NONE;
+		else {
+			cutoffSlot[entityId] = topSlot[kept - 1];
+			cutoffAffinity[entityId] = topAffinity[kept - 1];
+		}
+	}
+
+	/**
+	 * Orders the classes by affinity, and then by hash
+	 */
+	private static boolean isWorse(double affinity1, long hash1, double affinity2, long hash2) {
+		return (affinity1 < affinity2) || ((affinity1 == affinity2) && (hash1 > hash2));
+	}
+
+	private void ensureEntity(int entityId) {
+		if (entityId < slotOfEntity.length)
+			return;
+		int length = Math.max(entityId + 1, slotOfEntity.length << 1);
+		int oldLength = slotOfEntity.length;
+		slotOfEntity = Arrays.copyOf(slotOfEntity, length);
+		Arrays.fill(slotOfEntity, oldLength, length, MoveStore.NONE);
+		welcomingSlots = Arrays.copyOf(welcomingSlots, length);
+		welcomingCount = Arrays.copyOf(welcomingCount, length);
+		welcomingAffinity = Arrays.copyOf(welcomingAffinity, length);
+		cutoffSlot = Arrays.copyOf(cutoffSlot, length);
+		Arrays.fill(cutoffSlot, oldLength, length, MoveStore.NONE);
+		cutoffAffinity = Arrays.copyOf(cutoffAffinity, length);
+		bestOfEntity = Arrays.copyOf(bestOfEntity, length);
+		Arrays.fill(bestOfEntity, oldLength, length, MoveStore.NONE);
+		recordOfEntity = Arrays.copyOf(recordOfEntity, length);
+		lookAgain = Arrays.copyOf(lookAgain, length);
 	}
 
-	private void removeMove(CratMove move) {
-		sumOfGain -= move.gain;
-		sumOfGain2 -= move.gain * move.gain;
-		if (comparison.isGood(move.gain))
+	private int allocateSlot(EvaluatedClass cl) {
+		int slot;
+		if (freeSlotCount > 0)
+			slot = freeSlots[--freeSlotCount];
+		else {
+			slot = slotCount++;
+			if (slot == classOfSlot.length)
+				classOfSlot = Arrays.copyOf(classOfSlot, slot << 1);
+		}
+		classOfSlot[slot] = cl;
+		slotOf.put(cl.getHash(), slot);
+		store.setClass(slot, cl.getHash());
+		if (entityBests != null)
+			entityBests.setClass(slot, cl.getHash());
+		return slot;
+	}
+
+	private void removeMove(int move) {
+		double gain = store.gain[move];
+		sumOfGain -= gain;
+		sumOfGain2 -= gain * gain;
+		if (comparison.isGood(gain))
 			improvingMoves--;
-		// move will be removed by the iterator
-		// and not by: 'feasibleMoves.remove(move)'
+		if (entityBests != null) {
+			int entityId = store.moving[move];
+			if (bestOfEntity[entityId] == move) {
+				entityBests.remove(recordOfEntity[entityId]);
+				bestOfEntity[entityId] = MoveStore.NONE;
+				lookAgain[entityId] = true;
+				if (lookAgainCount == lookAgainList.length)
+					lookAgainList = Arrays.copyOf(lookAgainList, lookAgainCount << 1);
+				lookAgainList[lookAgainCount++] = entityId;
+			}
+		}
+		store.remove(move);
+	}
+
+	/**
+	 * Adds the move of an entity from its class to a class welcoming it
+	 */
+	private void addMove(int moving, int fromSlot, int toSlot) {
+		int exit = classOfSlot[fromSlot].getExitGains().indexOf(moving);
+		int entry = classOfSlot[toSlot].getEntryGains().indexOf(moving);
+		if ((exit >= 0) && (entry >= 0))
+			addMove(moving, fromSlot, toSlot, classOfSlot[fromSlot].getExitGains().valueAt(exit)
+					+ classOfSlot[toSlot].getEntryGains().valueAt(entry));
 	}
 
-	private void addMove(CratMove move) {
-		sumOfGain += move.gain;
-		sumOfGain2 += move.gain * move.gain;
-		if (comparison.isGood(move.gain))
+	private void removeMove(int moving, int fromSlot, int toSlot) {
+		for (int move = store.firstOutgoing(fromSlot); move != MoveStore.NONE; move = store
+				.nextOutgoing(move))
+			if ((store.moving[move] == moving) && (store.to[move] == toSlot)) {
+				removeMove(move);
+				return;
+			}
+	}
+
+	private void addMove(int moving, int fromSlot, int toSlot, double gain) {
+		sumOfGain += gain;
+		sumOfGain2 += gain * gain;
+		if (comparison.isGood(gain))
 			improvingMoves++;
-		if (comparison.compare(0, move.gain)) {
-			if (comparison.compare(move.gain, minDeterioration))
-				minDeterioration = move.gain;
-			if (comparison.compare(maxDeterioration, move.gain))
-				maxDeterioration = move.gain;
+		if (comparison.compare(0, gain)) {
+			if (comparison.compare(gain, minDeterioration))
+				minDeterioration = gain;
+			if (comparison.compare(maxDeterioration, gain))
+				maxDeterioration = gain;
+		}
+		int move = store.add(moving, fromSlot, toSlot, gain);
+		if ((entityBests != null) && !lookAgain[moving]) {
+			int best = bestOfEntity[moving];
+			if ((best == MoveStore.NONE) || (store.compare(move, best) < 0)) {
+				if (best != MoveStore.NONE)
+					entityBests.remove(recordOfEntity[moving]);
+				setBestOfEntity(moving, move);
+			}
 		}
-		moves.add(move);
 	}
 
-	public CratMove getBestMove() {
-		if (moves.size() > 0)
-			return moves.first();
-		return null;
+	// Best move of each entity
+
+	private void setBestOfEntity(int entityId, int move) {
+		bestOfEntity[entityId] = move;
+		recordOfEntity[entityId] = entityBests.add(entityId, store.from[move], store.to[move],
+				store.gain[move]);
 	}
 
-	public CratMove getAMoveBetterThan(double threshold) {
-		// System.out.println(getTopEvaluatedMoves(50));
-		if (moves.size() == 0)
+	/**
+	 * Brings the best moves of the entities up to date: they are found on the first call, and
+	 * then only for the entities whose best move was removed
+	 */
+	private void updateEntityBests() {
+		if (entityBests == null) {
+			entityBests = new MoveStore(biggerValueIsBetter, false);
+			for (int slot = 0; slot < slotCount; slot++)
+				if (classOfSlot[slot] != null)
+					entityBests.setClass(slot, classOfSlot[slot].getHash());
+			Arrays.fill(bestOfEntity, MoveStore.NONE);
+			for (int i = 0; i < store.size(); i++) {
+				int move = store.moveAt(i);
+				int best = bestOfEntity[store.moving[move]];
+				if ((best == MoveStore.NONE) || (store.compare(move, best) < 0))
+					bestOfEntity[store.moving[move]] = move;
+			}
+			for (int entityId = 0; entityId < bestOfEntity.length; entityId++)
+				if (bestOfEntity[entityId] != MoveStore.NONE)
+					setBestOfEntity(entityId, bestOfEntity[entityId]);
+			return;
+		}
+		// the moves of each origin class are scanned once, for all its entities
+		for (int i = 0; i < lookAgainCount; i++) {
+			int originSlot = slotOfEntity[lookAgainList[i]];
+			if ((originSlot == MoveStore.NONE) || !lookAgain[lookAgainList[i]])
+				continue;
+			for (int move = store.firstOutgoing(originSlot); move != MoveStore.NONE; move = store
+					.nextOutgoing(move)) {
+				int entityId = store.moving[move];
+				int best = bestOfEntity[entityId];
+				if (lookAgain[entityId]
+						&& ((best == MoveStore.NONE) || (store.compare(move, best) < 0)))
+					bestOfEntity[entityId] = move;
+			}
+			for (int move = store.firstOutgoing(originSlot); move != MoveStore.NONE; move = store
+					.nextOutgoing(move)) {
+				int entityId = store.moving[move];
+				if (lookAgain[entityId]) {
+					lookAgain[entityId] = false;
+					setBestOfEntity(entityId, bestOfEntity[entityId]);
+				}
+			}
+		}
+		for (int i = 0; i < lookAgainCount; i++)
+			lookAgain[lookAgainList[i]] = false; // entities without moves
+		lookAgainCount = 0;
+	}
+
+	/**
+	 * @return a CratMove describing the stored move, or null for MoveStore.NONE
+	 */
+	CratMove view(int move) {
+		if (move == MoveStore.NONE)
 			return null;
-		if (!((moves.first()).isBetterThan(threshold)))
+		return new CratMove(0, store.moving[move], classOfSlot[store.from[move]],
+				classOfSlot[store.to[move]], store.gain[move], biggerValueIsBetter);
+	}
+
+	public CratMove getBestMove() {
+		return view(store.first());
+	}
+
+	/**
+	 * @param k
+	 *            0 for the best move, 1 for the second best etc.
+	 * @return the k-th best move, or null if there are not so many moves
+	 */
+	public CratMove getKthBestMove(int k) {
+		if ((k < 0) || (k >= store.size()))
 			return null;
-		// Create a fake move with gain=threshold
-		CratMove fake = new CratMove(0, 0, empty, empty, true);
-		fake.gain = threshold;
-		// Get all moves better than fake
-		CratMove move = moves.floor(fake);
-		SortedSet<CratMove> betterMoves = moves.subSet(moves.first(), move);
-		if (betterMoves.size() < 2)
-			return moves.first();
-		// Return random move from 'betterMoves'
-		return getRandomFromCollection(betterMoves);
-	}
-
-	public CratMove getRandomMove() {
+		return view(store.select(k));
+	}
+
+	public CratMove getAMoveBetterThan(double threshold, Random random) {
 		// System.out.println(getTopEvaluatedMoves(50));
-		return getRandomFromCollection(moves);
+		// Moves are sorted by gain: the better moves form a prefix
+		int betterMoves = store.countBetterThan(threshold);
+		if (betterMoves == 0)
+			return null;
+		if (betterMoves < 2)
+			return view(store.first());
+		// Return random move from the better moves
+		return view(store.select(random.nextInt(betterMoves)));
 	}
 
-	private CratMove getRandomFromCollection(Collection<CratMove> movePool) {
-		if (movePool.size() == 0)
+	public CratMove getRandomMove(Random random) {
+		// System.out.println(getTopEvaluatedMoves(50));
+		if (store.size() == 0)
 			return null;
-		int position = rand.nextInt(movePool.size());
-		Iterator<CratMove> it = movePool.iterator();
-		while (position-- > 0)
-			;
-		it.next();
-		return it.next();
+		return view(store.select(random.nextInt(store.size())));
+	}
+
+	/**
+	 * @return the feasible moves, best first. The CratMove objects are created while iterating.
+	 */
+	public Collection<CratMove> getEvaluatedMoves() {
+		return inOrder(store, false);
 	}
 
+	/**
+	 * @return the best move of each movable entity, best first. So the first move of an
+	 *         entity in getEvaluatedMoves() is found without visiting its other moves.
+	 */
+	public Collection<CratMove> getBestMovesPerEntity() {
+		updateEntityBests();
+		return inOrder(entityBests, true);
+	}
+
+	/**
+	 * @param records
+	 *            true if the moves of the ordered store are copies of the best moves of the
+	 *            entities
+	 */
+	private Collection<CratMove> inOrder(final MoveStore ordered, final boolean records) {
+		return new AbstractCollection<CratMove>() {
+			@Override
+			public Iterator<CratMove> iterator() {
+				return new Iterator<CratMove>() {
+					private final MoveStore.Cursor cursor = ordered.new Cursor();
+
+					@Override
+					public boolean hasNext() {
+						return cursor.hasNext();
+					}
+
+					@Override
+					public CratMove next() {
+						if (!cursor.hasNext())
+							throw new NoSuchElementException();
+						int move = cursor.next();
+						return view(records ? bestOfEntity[ordered.moving[move]] : move);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return ordered.size();
+			}
+		};
+	}
+
+	/**
+	 * @return the random move generator, kept up to date while moves are added or removed
+	 */
 	public RandomMoveGenerator getRandomMoveGenerator() {
-		return new RandomMoveGenerator(moves);
+		return sampler;
 	}
 
 	public int getNumOfFeasibleMoves() {
-		return moves.size();
+		return store.size();
 	}
 
 	public double getMoveGainAverage() {
-		if (moves.size() > 0)
-			return sumOfGain / moves.size();
+		if (store.size() > 0)
+			return sumOfGain / store.size();
 		return 0.0;
 	}
 
 	public double getMoveGainStdDev() {
-		if (moves.size() > 1)
-			return Math.sqrt((sumOfGain2 - (moves.size() * sumOfGain * sumOfGain))
-					/ (moves.size() - 1));
+		int size = store.size();
+		if (size > 1)
+			return Math.sqrt((sumOfGain2 - (size * sumOfGain * sumOfGain)) / (size - 1));
 		return 0.0;
 	}
 
 	public double getGoodMovesMetric() {
-		return (double) improvingMoves / moves.size();
+		return (double) improvingMoves / store.size();
 	}
 
 	/**
@@ -195,10 +776,24 @@ public class Navigator {
 	}
 
 	public void clear() {
-		if (classes != null)
-			classes.clear();
-		if (moves != null)
-			moves.clear();
+		if (store != null)
+			store.clear();
+		if (slotOf != null)
+			slotOf.clear();
+		if (classOfSlot != null)
+			Arrays.fill(classOfSlot, null);
+		freeSlotCount = 0;
+		slotCount = 0;
+		if (slotOfEntity != null)
+			Arrays.fill(slotOfEntity, MoveStore.NONE);
+		if (welcomingCount != null)
+			Arrays.fill(welcomingCount, 0);
+		if (cutoffSlot != null)
+			Arrays.fill(cutoffSlot, MoveStore.NONE);
+		entityBests = null;
+		if (lookAgain != null)
+			Arrays.fill(lookAgain, false);
+		lookAgainCount = 0;
 	}
 
 	@Override
@@ -207,30 +802,6 @@ public class Navigator {
 		super.finalize();
 	}
 
-	private class MoveComparator implements Comparator<CratMove> {
-		@Override
-		public int compare(CratMove move1, CratMove move2) {
-			if (comparison.compare(move1.gain, move2.gain))
-				return -1;
-			else if (comparison.compare(move2.gain, move1.gain))
-				return 1;
-			else if (move1.from.getHash() < move2.from.getHash())
-				return -1;
-			else if (move1.from.getHash() > move2.from.getHash())
-				return 1;
-			else if (move1.to.getHash() < move2.to.getHash())
-				return -1;
-			else if (move1.to.getHash() > move2.to.getHash())
-				return 1;
-			else if (move1.moving < move2.moving)
-				return -1;
-			else if (move1.moving > move2.moving)
-				return 1;
-			else
-				return 0;
-		}
-	}
-
 	private interface ComparisonPolicy {
 		public boolean compare(double value1, double value2);
 
@@ -264,7 +835,7 @@ public class Navigator {
 	public String getTopEvaluatedMoves(int howMany) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("Top %d of evaluated moves\n", howMany));
-		for (CratMove move : moves) {
+		for (CratMove move : getEvaluatedMoves()) {
 			sb.append(String.format("%d from %s to %s\t%10.8f\n", move.moving, move.from, move.to,
 					move.gain));
 			if (--howMany <= 0)
@@ -0,0 +1,64 @@
+package gr.uom.jcaliper.explorer;
+
+import gr.uom.jcaliper.heuristics.IProblemState;
+
+/**
+ * Compact copy of a CratState
+ * <p>
+ * Keeps only the class label of each entity (entities with the same label are classmates),
+ * the evaluation and the hash of the state. The CratExplorer that recorded it updates it with
+ * the entities moved since, and expands it back to a CratState when needed.
+ *
+ * @author Panagiotis Kouros
+ */
+public class StateSnapshot implements IProblemState {
+
+	// class label by entity ID (0: entity not in state)
+	final int[] labels;
+	double evaluation;
+	long hash;
+	private final boolean biggerIsBetter;
+
+	// Constructors
+
+	StateSnapshot(int[] labels, double evaluation, long hash, boolean biggerIsBetter) {
+		this.labels = labels;
+		this.evaluation = evaluation;
+		this.hash = hash;
+		this.biggerIsBetter = biggerIsBetter;
+	}
+
+	// Methods
+
+	@Override
+	public StateSnapshot clone() {
+		return new StateSnapshot(labels.clone(), evaluation, hash, biggerIsBetter);
+	}
+
+	@Override
+	public double getEvaluation() {
+		return evaluation;
+	}
+
+	@Override
+	public boolean isBetterThan(double threshold) {
+		if (biggerIsBetter)
+			return ((evaluation - threshold) > 1e-10);
+		return ((threshold - evaluation) > 1e-10);
+	}
+
+	@Override
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @param entityId
+	 *            the entity ID
+	 * @return the class label of the entity (0 if the entity is not in the state)
+	 */
+	public int getLabel(int entityId) {
+		return labels[entityId];
+	}
+
+}
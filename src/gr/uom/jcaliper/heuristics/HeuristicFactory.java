@@ -49,6 +49,9 @@ public class HeuristicFactory {
 		default:
 			break;
 		}
+		// the same algorithm makes the same random choices, whatever runs beside it
+		if (heuristic != null)
+			heuristic.setSeed(heuristicId);
 		return heuristic;
 	}
 }
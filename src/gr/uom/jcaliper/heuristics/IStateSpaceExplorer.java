@@ -1,6 +1,7 @@
 package gr.uom.jcaliper.heuristics;
 
 import java.util.Collection;
+import java.util.Random;
 
 public interface IStateSpaceExplorer {
 
@@ -26,7 +27,7 @@ public interface IStateSpaceExplorer {
 
 	public IMove getBestMove();
 
-	public IMove getAMoveBetterThan(double threshold);
+	public IMove getAMoveBetterThan(double threshold, Random random);
 
 	// Getting all possible moves
 
@@ -38,9 +39,15 @@ public interface IStateSpaceExplorer {
 	 */
 	public Collection<? extends IMove> getEvaluatedMoves();
 
+	/**
+	 * Returns the best move of each tabu attribute (see IMove)
+	 * The moves are sorted by evaluation (best is first)
+	 */
+	public Collection<? extends IMove> getBestMovePerAttribute();
+
 	// Getting random moves or states
 
-	public IMove getRandomMove();
+	public IMove getRandomMove(Random random);
 
 	public RandomMoveGenerator getRandomMoveGenerator();
 
@@ -48,4 +55,25 @@ public interface IStateSpaceExplorer {
 
 	public boolean currentStateIsLocalOptimum();
 
+	// Recording solutions
+
+	/**
+	 * Records the current state in a compact form. When 'previous' is the last state recorded
+	 * by this explorer, it is updated in place with the moves done since.
+	 */
+	public IProblemState recordCurrentState(IProblemState previous);
+
+	/**
+	 * Returns the full problem state of a recorded (compact) state
+	 */
+	public IProblemState expandState(IProblemState state);
+
+	// Concurrent searches
+
+	/**
+	 * Returns a new explorer at the current state of this one. Moves in either explorer do not
+	 * affect the other.
+	 */
+	public IStateSpaceExplorer fork();
+
 }
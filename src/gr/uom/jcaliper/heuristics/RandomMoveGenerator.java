@@ -2,23 +2,53 @@ package gr.uom.jcaliper.heuristics;
 
 import java.util.Collection;
 import java.util.Random;
-import java.util.TreeMap;
 
+/**
+ * Picks moves at random from a pool of moves
+ * <p>
+ * The moves are kept in a dense array, so a pick is O(1). Subclasses may keep the pool up to
+ * date in place, instead of creating a new generator after each move, or keep it in their own
+ * storage by overriding getNumOfMoves and getMove.
+ */
 public class RandomMoveGenerator {
 
-	private TreeMap<Integer, IMove> map = new TreeMap<Integer, IMove>();
-	private static Random rand = new Random(0);
+	protected IMove[] moves;
+	protected int size = 0;
 
 	public RandomMoveGenerator(Collection<? extends IMove> moves /* , MoveStatistics stats */) {
-		int index = 0;
-		for (IMove move : moves)
-			map.put(index++, move);
+		this.moves = moves.toArray(new IMove[moves.size()]);
+		size = this.moves.length;
 	}
 
-	public IMove getRandomMove() {
-		if (map.size() > 0)
-			return map.get(rand.nextInt(map.size()));
+	protected RandomMoveGenerator() {
+		moves = new IMove[0];
+	}
+
+	/**
+	 * @param random
+	 *            the random generator of the search that asks for the move
+	 */
+	public IMove getRandomMove(Random random) {
+		int numOfMoves = getNumOfMoves();
+		if (numOfMoves > 0)
+			return getMove(random.nextInt(numOfMoves));
 		return null;
 	}
 
+	/**
+	 * @param index
+	 *            0 &lt;= index &lt; getNumOfMoves()
+	 * @return the move at the given position of the pool
+	 */
+	protected IMove getMove(int index) {
+		return moves[index];
+	}
+
+	/**
+	 * @return the number of moves in the pool
+	 */
+	public int getNumOfMoves() {
+		return size;
+	}
+
 }
@@ -1,12 +1,11 @@
 package gr.uom.jcaliper.heuristics;
 
 import gr.uom.jcaliper.loggers.ActivityLogger;
-import gr.uom.jcaliper.plugin.Activator;
-import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 
 import java.util.Collection;
-
-import org.eclipse.jface.preference.IPreferenceStore;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Panagiotis Kouros
@@ -29,6 +28,14 @@ public abstract class SearchAlgorithm {
 	protected long logTime;
 	protected ISearchLogger logger = null;
 
+	// Random choices: each algorithm has its own generator, so that its results do not depend
+	// on the other searches running at the same time
+	protected final Random random = new Random(0);
+
+	// Parallel runs: stop signal shared by the algorithms, raised on target fitness
+	private AtomicBoolean stopSignal = null;
+	private double targetFitness;
+
 	// CONSTRUCTORS
 
 	/**
@@ -42,7 +49,7 @@ public abstract class SearchAlgorithm {
 		bestSolution = currentState.clone();
 		this.pool = pool;
 		logger = moveLogger;
-		initializeTimeLimit();
+		readConfiguration();
 	}
 
 	/**
@@ -58,7 +65,7 @@ public abstract class SearchAlgorithm {
 		bestSolution = currentState.clone();
 		this.pool = pool;
 		logger = moveLogger;
-		initializeTimeLimit();
+		readConfiguration();
 	}
 
 	// Each algorithm overrides these methods
@@ -105,6 +112,21 @@ public abstract class SearchAlgorithm {
 		// ((CratMove) move).getTo(), currentState);
 	}
 
+	/**
+	 * Records the current state as best solution, in O(moves since last record)
+	 */
+	protected void recordBestSolution() {
+		bestSolution = explorer.recordCurrentState(bestSolution);
+	}
+
+	/**
+	 * @return the best solution as full problem state
+	 */
+	protected IProblemState expandBestSolution() {
+		bestSolution = explorer.expandState(bestSolution);
+		return bestSolution;
+	}
+
 	protected void storeBestSolution() {
 		if (pool != null)
 			pool.storeLocalOptimum(this, bestSolution, moveId, elapsedTime());
@@ -115,25 +137,31 @@ public abstract class SearchAlgorithm {
 			pool.storeLocalOptimum(this, state, moveId, elapsedTime());
 	}
 
+	/**
+	 * Climbs from a solution with both hill climbers, if the run configuration asks for it.
+	 * Each climber starts from the solution on its own fork of the explorer, so the explorer (and
+	 * the current state) of this algorithm is left untouched.
+	 *
+	 * @return the better of the two hill climbing optima (or the solution itself)
+	 */
 	protected IProblemState improveSolution(IProblemState solution) {
-		if (solution != null)
+		if (!IMPROVE_SOLUTION)
 			return (solution);
 		// Do hill climbing steepest
-		// TODO clone explorer
-		HillClimbing hillClimber = new HillClimbing(explorer, solution, pool, logger);
+		HillClimbing hillClimber = new HillClimbing(explorer.fork(), solution, pool, logger);
 		hillClimber.setMoveId(moveId);
+		hillClimber.setStopAtTarget(targetFitness, stopSignal);
 		hillClimber.setUseHillClimbing(HillClimbing.USE_HC_STEEPEST);
 		IProblemState steepestBest = hillClimber.getOptimum();
 		storeSolution(steepestBest);
-		currentState = steepestBest;
 		logLocalOptimum(String.format("Improved by %s", hillClimber.getShortName()));
 		// Do hill climbing first choice
-		hillClimber = new HillClimbing(explorer, solution, pool, logger);
+		hillClimber = new HillClimbing(explorer.fork(), solution, pool, logger);
 		hillClimber.setMoveId(moveId);
+		hillClimber.setStopAtTarget(targetFitness, stopSignal);
 		hillClimber.setUseHillClimbing(HillClimbing.USE_HC_FIRST_CHOICE);
 		IProblemState firstChoiceBest = hillClimber.getOptimum();
 		storeSolution(firstChoiceBest);
-		currentState = firstChoiceBest;
 		logLocalOptimum(String.format("Improved by %s", hillClimber.getShortName()));
 
 		if (steepestBest.isBetterThan(firstChoiceBest.getEvaluation()))
@@ -165,7 +193,7 @@ public abstract class SearchAlgorithm {
 	};
 
 	public IMove getABetterMove() {
-		return explorer.getAMoveBetterThan(0);
+		return explorer.getAMoveBetterThan(0, random);
 	}
 
 	public int getNumOfFeasibleMoves() {
@@ -176,8 +204,12 @@ public abstract class SearchAlgorithm {
 		return explorer.getEvaluatedMoves();
 	}
 
+	public Collection<? extends IMove> getBestMovePerAttribute() {
+		return explorer.getBestMovePerAttribute();
+	}
+
 	public IMove getRandomMove() {
-		return explorer.getRandomMove();
+		return explorer.getRandomMove(random);
 	};
 
 	public RandomMoveGenerator getRandomMoveGenerator() {
@@ -241,6 +273,8 @@ public abstract class SearchAlgorithm {
 	protected boolean timeOver() {
 		final String MSG_TIMEOVER = "*** TimeOver!";
 		final String MSG_ABORTED = "*** Interrupted by user!";
+		final String MSG_TARGET = "*** Target fitness reached!";
+		final String MSG_STOPPED = "*** Stopped: another algorithm reached the target fitness";
 		long currentTimeMillis = System.currentTimeMillis();
 		if (currentTimeMillis > logTime) {
 			String message = String.format(
@@ -265,9 +299,30 @@ public abstract class SearchAlgorithm {
 			return true;
 		}
 
+		if (stopSignal != null) {
+			if (reachesTarget(bestSolution) && stopSignal.compareAndSet(false, true)) {
+				ActivityLogger.info("\n" + MSG_TARGET + "\n");
+				logInfo(MSG_TARGET);
+				return true;
+			}
+			if (stopSignal.get()) {
+				ActivityLogger.info("\n" + MSG_STOPPED + "\n");
+				logInfo(MSG_STOPPED);
+				return true;
+			}
+		}
+
 		return false;
 	}
 
+	/**
+	 * @return true if the state is at least as good as the target fitness
+	 */
+	public boolean reachesTarget(IProblemState state) {
+		return state.isBetterThan(targetFitness)
+				|| (Math.abs(state.getEvaluation() - targetFitness) < 1e-10);
+	}
+
 	// Getters and Setters
 
 	/**
@@ -308,6 +363,14 @@ public abstract class SearchAlgorithm {
 		this.moveId = moveId;
 	}
 
+	/**
+	 * @param seed
+	 *            the seed of the random choices of the algorithm
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
 	/**
 	 * @return the name
 	 */
@@ -326,11 +389,26 @@ public abstract class SearchAlgorithm {
 		return moveId;
 	}
 
-	private void initializeTimeLimit() {
-		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
-		LIMIT_TIME = store.getBoolean(Preferences.P_SEARCH_LIMIT_TIME);
-		MAX_RUNNING_TIME = store.getInt(Preferences.P_SEARCH_MAX_RUNNING_TIME);
+	/**
+	 * Makes the algorithm stop when the signal is raised. The algorithm raises the signal
+	 * itself, when its best solution reaches the target fitness.
+	 *
+	 * @param targetFitness
+	 *            the target fitness
+	 * @param stopSignal
+	 *            the signal shared by the algorithms running in parallel
+	 */
+	public void setStopAtTarget(double targetFitness, AtomicBoolean stopSignal) {
+		this.targetFitness = targetFitness;
+		this.stopSignal = stopSignal;
+	}
+
+	private void readConfiguration() {
+		RunConfiguration configuration = RunConfiguration.getCurrent();
+		LIMIT_TIME = configuration.isTimeLimited();
+		MAX_RUNNING_TIME = configuration.getMaxRunningTime();
 		LOG_INTERVAL = 30000; // 30sec
+		IMPROVE_SOLUTION = configuration.isImproveSolutions();
 	}
 
 	// if LIMIT_TIME is true,
@@ -338,6 +416,10 @@ public abstract class SearchAlgorithm {
 	public boolean LIMIT_TIME;
 	public int MAX_RUNNING_TIME;
 	public long LOG_INTERVAL;
+	// if IMPROVE_SOLUTION is true,
+	// improveSolution() climbs from the solution with both hill climbers
+	public boolean IMPROVE_SOLUTION;
 
-	public static boolean ABORTED = false;
+	// set by the UI and the executor threads, read by the running algorithms
+	public static volatile boolean ABORTED = false;
 }
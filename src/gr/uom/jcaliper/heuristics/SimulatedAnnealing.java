@@ -2,14 +2,11 @@ package gr.uom.jcaliper.heuristics;
 
 import gr.uom.jcaliper.preferences.Preferences;
 
-import java.util.Random;
-
 /**
  * @author Panagiotis Kouros
  */
 public class SimulatedAnnealing extends SearchAlgorithm {
 
-	private final static Random random = new Random(0);
 	private RandomMoveGenerator moveGen;
 
 	/**
@@ -58,14 +55,14 @@ public class SimulatedAnnealing extends SearchAlgorithm {
 			logInfo(String.format("Temperature Level %d", k));
 			logLabel(String.format("%d", k));
 			for (int trial = 1; trial <= N; trial++) {
-				IMove candidate = moveGen.getRandomMove();
+				IMove candidate = moveGen.getRandomMove(random);
 				if (candidate == null)
-					return bestSolution; // no feasible moves
+					return expandBestSolution(); // no feasible moves
 				if (candidate.isBetter()) {
 					// Always accept better candidate
 					doMove(candidate);
 					if (currentState.isBetterThan(bestSolution.getEvaluation())) {
-						bestSolution = currentState.clone();
+						recordBestSolution();
 						lastLevelWithImprovement = k;
 					}
 				} else {
@@ -76,7 +73,7 @@ public class SimulatedAnnealing extends SearchAlgorithm {
 				}
 
 				if (timeOver())
-					return bestSolution;
+					return expandBestSolution();
 			}
 			levelsWithoutImprovement = k - lastLevelWithImprovement;
 			k++;
@@ -85,7 +82,7 @@ public class SimulatedAnnealing extends SearchAlgorithm {
 		} while (levelsWithoutImprovement <= MAX_LEVELS_WITHOUT_IMPROVEMENT);
 		// bestSolution = improveSolution(bestSolution);
 		logEnd();
-		bestSolution = improveSolution(bestSolution);
+		bestSolution = improveSolution(expandBestSolution());
 		return bestSolution;
 	}
 
@@ -102,7 +99,7 @@ public class SimulatedAnnealing extends SearchAlgorithm {
 	@Override
 	protected void doMove(IMove move) {
 		super.doMove(move);
-		moveGen = getRandomMoveGenerator();
+		// moveGen is kept up to date by the explorer
 		// TODO use move statistics to self-adapt temperature
 	}
 
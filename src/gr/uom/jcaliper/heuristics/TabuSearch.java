@@ -38,7 +38,7 @@ public class TabuSearch extends SearchAlgorithm {
 				break;
 			doMove(bestMove);
 			if (currentState.isBetterThan(bestSolution.getEvaluation())) {
-				bestSolution = currentState.clone();
+				recordBestSolution();
 				stepsWithoutImprovement = 0;
 			} else
 				stepsWithoutImprovement++;
@@ -49,7 +49,7 @@ public class TabuSearch extends SearchAlgorithm {
 		} while (stepsWithoutImprovement < maxUnproductiveMoves);
 		// improveBestSolution();
 		logEnd();
-		bestSolution = improveSolution(bestSolution);
+		bestSolution = improveSolution(expandBestSolution());
 		return bestSolution;
 	}
 
@@ -70,7 +70,9 @@ public class TabuSearch extends SearchAlgorithm {
 	private IMove getBestPermittedMove() {
 		// 'Aspiration': when a move leads to new best solution, permit it
 		double aspirationThreshold = bestSolution.getEvaluation() - currentState.getEvaluation();
-		for (IMove move : getEvaluatedMoves())
+		// Only the best move of each attribute: if it is tabu and does not aspire, neither do
+		// the other moves of the attribute
+		for (IMove move : getBestMovePerAttribute())
 			if (move.isBetterThan(aspirationThreshold) || isPermitted(move))
 				return move;
 		// If permitted move not found, retry without restrictions
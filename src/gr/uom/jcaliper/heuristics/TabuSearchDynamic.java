@@ -57,7 +57,7 @@ public class TabuSearchDynamic extends SearchAlgorithm {
 				break;
 			doMove(bestMove);
 			if (currentState.isBetterThan(bestSolution.getEvaluation())) {
-				bestSolution = currentState.clone();
+				recordBestSolution();
 				unproductiveMoves = 0;
 			} else
 				unproductiveMoves++;
@@ -66,7 +66,7 @@ public class TabuSearchDynamic extends SearchAlgorithm {
 		} while ((unproductiveMoves < maxUnproductiveMoves) && !timeOver());
 
 		logEnd();
-		bestSolution = improveSolution(bestSolution);
+		bestSolution = improveSolution(expandBestSolution());
 		return bestSolution;
 	}
 
@@ -125,7 +125,9 @@ public class TabuSearchDynamic extends SearchAlgorithm {
 	private IMove getBestPermittedMove() {
 		// 'Aspiration': when a move leads to new best solution, permit it
 		double aspirationThreshold = bestSolution.getEvaluation() - currentState.getEvaluation();
-		for (IMove move : getEvaluatedMoves())
+		// Only the best move of each attribute: if it is tabu and does not aspire, neither do
+		// the other moves of the attribute
+		for (IMove move : getBestMovePerAttribute())
 			if (move.isBetterThan(aspirationThreshold) || isPermitted(move))
 				return move;
 		// If permitted move not found, retry without restrictions
@@ -1,6 +1,7 @@
 package gr.uom.jcaliper.loggers;
 
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -22,6 +23,8 @@ public class ActivityLogger extends Handler {
 	private static final int FHEIGHT = 400;
 	private LogFrame window = null;
 	private Logger logger = null;
+	// without a display (e.g. command line runs on a build server) log to the console
+	private final boolean headless = GraphicsEnvironment.isHeadless();
 
 	// the singleton instance
 	private static ActivityLogger handler = new ActivityLogger();
@@ -29,9 +32,10 @@ public class ActivityLogger extends Handler {
 	private ActivityLogger() {
 		super();
 		setFormatter(new MyTinyFormatter());
-		if (window == null)
+		if (!headless) {
 			window = new LogFrame("Activity log", FWIDTH, FHEIGHT);
-		window.setVisible(false);
+			window.setVisible(false);
+		}
 		logger = Logger.getLogger("Activity_logger");
 		for (Handler iHandler : logger.getParent().getHandlers())
 			logger.getParent().removeHandler(iHandler);
@@ -56,9 +60,11 @@ public class ActivityLogger extends Handler {
 
 	@Override
 	public synchronized void publish(LogRecord record) {
-		if (window == null)
-			window = new LogFrame("Logging window", FWIDTH, FHEIGHT);
-		window.setVisible(true);
+		if (!headless) {
+			if (window == null)
+				window = new LogFrame("Logging window", FWIDTH, FHEIGHT);
+			window.setVisible(true);
+		}
 		String message = null;
 		// check if the record is loggable
 		if (!isLoggable(record))
@@ -70,7 +76,10 @@ public class ActivityLogger extends Handler {
 		}
 
 		try {
-			window.showInfo(message);
+			if (headless)
+				System.out.print(message);
+			else
+				window.showInfo(message);
 		} catch (Exception ex) {
 			reportError(null, ex, ErrorManager.WRITE_FAILURE);
 		}
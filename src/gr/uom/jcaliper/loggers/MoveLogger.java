@@ -1,12 +1,10 @@
 package gr.uom.jcaliper.loggers;
 
-import gr.uom.jcaliper.heuristics.HeuristicFactory;
 import gr.uom.jcaliper.heuristics.IMove;
 import gr.uom.jcaliper.heuristics.IProblemState;
 import gr.uom.jcaliper.heuristics.ISearchLogger;
 import gr.uom.jcaliper.heuristics.SearchAlgorithm;
-import gr.uom.jcaliper.plugin.Activator;
-import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -16,9 +14,15 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
-import org.eclipse.jface.preference.IPreferenceStore;
 
 /**
+ * Logs the moves of the heuristics
+ * <p>
+ * The moves, local optima and labels are recorded in a binary trace (TRACE.bin) by a
+ * TraceWriter, so the searching thread neither formats nor writes them. flushAll converts the
+ * trace to the .dat files (HCS, HCF, TS, TSD, SA, OPT and LAB); TraceConverter does the same
+ * for the trace of an interrupted run.
+ *
  * @author Panagiotis Kouros
  */
 public class MoveLogger implements ISearchLogger {
@@ -28,15 +32,8 @@ public class MoveLogger implements ISearchLogger {
 	private String logPath;
 	private ISearchLogger nextLogger = null;
 	private BufferedWriter logORG;
-	private BufferedWriter logHCS;
-	private BufferedWriter logHCF;
-	private BufferedWriter logTS;
-	private BufferedWriter logTSD;
-	private BufferedWriter logSA;
-	private BufferedWriter logOPT;
-	private BufferedWriter logLAB;
 	private BufferedWriter logRES, logRefactoringClustersFile;
-	private BufferedWriter logWriter = null;
+	private TraceWriter trace;
 
 	public MoveLogger() {
 		Date now = new Date(System.currentTimeMillis());
@@ -56,15 +53,9 @@ public class MoveLogger implements ISearchLogger {
 
 	private void initializeLogFiles() {
 		logORG = createLogFile("ORIG.dat");
-		logHCS = createLogFile("HCS.dat");
-		logHCF = createLogFile("HCF.dat");
-		logTS = createLogFile("TS.dat");
-		logTSD = createLogFile("TSD.dat");
-		logSA = createLogFile("SA.dat");
-		logOPT = createLogFile("OPT.dat");
-		logLAB = createLogFile("LAB.dat");
 		logRES = createLogFile("RESULTS.txt");
 		logRefactoringClustersFile = createLogFile("REFACTORING_CLUSTERS.txt");
+		trace = new TraceWriter(new File(logPath, TRACE_FILE));
 	}
 
 	private BufferedWriter createLogFile(String fileName) {
@@ -117,37 +108,10 @@ public class MoveLogger implements ISearchLogger {
 			}
 	}
 
-	private void logWrite(String message) {
-		if (logWriter != null)
-			try {
-				logWriter.write(message);
-			} catch (IOException e) {
-				System.err.println("Unable to write to log file.");
-				e.printStackTrace();
-			}
-	}
-
 	@Override
 	public void logStart(SearchAlgorithm algorithm, IProblemState startingState, int moveId,
 			long time) {
-		if (algorithm.getAlgorithmId() == HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE)
-			logWriter = logHCF;
-		else if (algorithm.getAlgorithmId() == HeuristicFactory.HILL_CLIMBING_STEEPEST)
-			logWriter = logHCS;
-		else if (algorithm.getAlgorithmId() == HeuristicFactory.TABU_SEARCH)
-			logWriter = logTS;
-		else if (algorithm.getAlgorithmId() == HeuristicFactory.TABU_SEARCH_DYNAMIC)
-			logWriter = logTSD;
-		else if (algorithm.getAlgorithmId() == HeuristicFactory.SIMULATED_ANNEALING)
-			logWriter = logSA;
-		else
-			logWriter = null;
-		if (logWriter != null) {
-			logWrite("\n");
-			logWrite(String.format("#Move \tCurrent Best Time\n", ""));
-			logWrite(String.format("%06d\t%10.8f\t%10.8f\t%06d\n", moveId,
-					startingState.getEvaluation(), startingState.getEvaluation(), time));
-		}
+		trace.start(algorithm.getAlgorithmId(), moveId, startingState.getEvaluation(), time);
 		if (nextLogger != null)
 			nextLogger.logStart(algorithm, startingState, moveId, time);
 	}
@@ -155,8 +119,8 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logMove(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, IMove move, long time) {
-		logWrite(String.format("%06d\t%10.8f\t%10.8f\t%06d\n", move.getMoveId(),
-				currentState.getEvaluation(), bestSolution.getEvaluation(), time));
+		trace.move(move.getMoveId(), currentState.getEvaluation(), bestSolution.getEvaluation(),
+				time);
 		if (nextLogger != null)
 			nextLogger.logMove(algorithm, currentState, bestSolution, move, time);
 	}
@@ -164,7 +128,7 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logJump(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, int moveId, long time, String info) {
-		logWrite("\n");
+		trace.jump();
 		if (nextLogger != null)
 			nextLogger.logJump(algorithm, currentState, bestSolution, moveId, time, info);
 	}
@@ -172,14 +136,8 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logLocalOptimum(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, int moveId, long time, String info) {
-		try {
-			logOPT.write(String.format("%06d\t%10.8f\t%06d\t%s: %s %d\n", moveId,
-					currentState.getEvaluation(), time, algorithm.getShortName(), info,
-					currentState.getHash()));
-		} catch (IOException e) {
-			System.err.println("Unable to write to log file.");
-			e.printStackTrace();
-		}
+		trace.optimum(moveId, currentState.getEvaluation(), time, algorithm.getShortName(), info,
+				currentState.getHash());
 		if (nextLogger != null)
 			nextLogger.logLocalOptimum(algorithm, currentState, bestSolution, moveId, time, info);
 	}
@@ -187,8 +145,7 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logInfo(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, int moveId, long time, String info) {
-		logWrite(String.format("%06d\t%10.8f\t%10.8f\t%06d\t%s\n", moveId,
-				currentState.getEvaluation(), bestSolution.getEvaluation(), time, info));
+		trace.info(moveId, currentState.getEvaluation(), bestSolution.getEvaluation(), time, info);
 		if (nextLogger != null)
 			nextLogger.logInfo(algorithm, currentState, bestSolution, moveId, time, info);
 	}
@@ -196,13 +153,7 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logLabel(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, int moveId, long time, String labelText) {
-		try {
-			logLAB.write(String.format("%06d\t%10.8f\t%06d\t%s\n", moveId,
-					currentState.getEvaluation(), time, labelText));
-		} catch (IOException e) {
-			System.err.println("Unable to write to log file.");
-			e.printStackTrace();
-		}
+		trace.label(moveId, currentState.getEvaluation(), time, labelText);
 		if (nextLogger != null)
 			nextLogger.logLabel(algorithm, currentState, bestSolution, moveId, time, labelText);
 	}
@@ -210,36 +161,26 @@ public class MoveLogger implements ISearchLogger {
 	@Override
 	public void logEnd(SearchAlgorithm algorithm, IProblemState currentState,
 			IProblemState bestSolution, int moveId, long time) {
-		try {
-			if (logWriter != null)
-				logWriter.flush();
-		} catch (IOException e) {
-			System.err.println("Unable to close log file.");
-			e.printStackTrace();
-		}
-		logWriter = null;
+		trace.end();
 		if (nextLogger != null)
 			nextLogger.logEnd(algorithm, currentState, bestSolution, moveId, time);
 	}
 
+	/**
+	 * Flushes the text files, closes the trace and converts it to the .dat files. Moves logged
+	 * afterwards are ignored.
+	 */
 	public void flushAll() {
+		trace.close();
+		try {
+			new TraceConverter(new File(logPath)).convert(trace.getFile());
+		} catch (IOException e) {
+			System.err.println("Unable to convert the trace file.");
+			e.printStackTrace();
+		}
 		try {
 			if (logORG != null)
 				logORG.flush();
-			if (logHCS != null)
-				logHCS.flush();
-			if (logHCF != null)
-				logHCF.flush();
-			if (logTS != null)
-				logTS.flush();
-			if (logTSD != null)
-				logTSD.flush();
-			if (logSA != null)
-				logSA.flush();
-			if (logOPT != null)
-				logOPT.flush();
-			if (logLAB != null)
-				logLAB.flush();
 			if (logRES != null)
 				logRES.flush();
 			if (logRefactoringClustersFile != null)
@@ -252,8 +193,9 @@ public class MoveLogger implements ISearchLogger {
 	}
 
 	private String getLogDirectory() {
-		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
-		return store.getString(Preferences.P_LOG_PATH);
+		return RunConfiguration.getCurrent().getLogPath();
 	}
 
+	private static final String TRACE_FILE = "TRACE.bin";
+
 }
@@ -0,0 +1,201 @@
+package gr.uom.jcaliper.loggers;
+
+import gr.uom.jcaliper.heuristics.HeuristicFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Converts a binary trace of TraceWriter to the .dat text files of MoveLogger
+ * <p>
+ * The moves of each algorithm go to its own file (HCS, HCF, TS, TSD, SA), the local optima to
+ * OPT.dat and the labels to LAB.dat, in exactly the layout MoveLogger used to write directly. A
+ * truncated last record (e.g. of an aborted run) is ignored.
+ * <p>
+ * Usage: TraceConverter trace-file [output-directory]
+ *
+ * @author Panagiotis Kouros
+ */
+public class TraceConverter {
+
+	private final File directory;
+	private BufferedWriter logHCS;
+	private BufferedWriter logHCF;
+	private BufferedWriter logTS;
+	private BufferedWriter logTSD;
+	private BufferedWriter logSA;
+	private BufferedWriter logOPT;
+	private BufferedWriter logLAB;
+	private BufferedWriter logWriter = null;
+
+	// Constructors
+
+	/**
+	 * @param directory
+	 *            the directory of the .dat files (appended if they exist)
+	 */
+	public TraceConverter(File directory) {
+		this.directory = directory;
+	}
+
+	// Methods
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: TraceConverter trace-file [output-directory]");
+			System.exit(1);
+		}
+		File trace = new File(args[0]);
+		File directory = (args.length > 1) ? new File(args[1]) : trace.getAbsoluteFile()
+				.getParentFile();
+		int records = new TraceConverter(directory).convert(trace);
+		System.out.format("%d records of %s converted to %s\n", records, trace, directory);
+	}
+
+	/**
+	 * @param trace
+	 *            the trace file
+	 * @return the number of converted records
+	 * @throws IOException
+	 *             if the trace can not be read or the .dat files can not be written
+	 */
+	public int convert(File trace) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				trace), 1 << 16));
+		int records = 0;
+		try {
+			if ((in.readInt() != TraceWriter.MAGIC) || (in.readInt() != TraceWriter.VERSION))
+				throw new IOException(trace + " is not a trace file");
+			openLogFiles();
+			while (true) {
+				int kind = in.read();
+				if (kind < 0)
+					break;
+				convertRecord((byte) kind, in);
+				records++;
+			}
+		} catch (EOFException e) {
+			// truncated last record
+		} finally {
+			in.close();
+			closeLogFiles();
+		}
+		return records;
+	}
+
+	private void convertRecord(byte kind, DataInputStream in) throws IOException {
+		switch (kind) {
+		case TraceWriter.START: {
+			int algorithmId = in.readInt();
+			int moveId = in.readInt();
+			double evaluation = in.readDouble();
+			long time = in.readLong();
+			logWriter = getLogFile(algorithmId);
+			if (logWriter != null) {
+				logWriter.write("\n");
+				logWriter.write(String.format("#Move \tCurrent Best Time\n", ""));
+				logWriter.write(String.format("%06d\t%10.8f\t%10.8f\t%06d\n", moveId, evaluation,
+						evaluation, time));
+			}
+			break;
+		}
+		case TraceWriter.MOVE: {
+			int moveId = in.readInt();
+			double current = in.readDouble();
+			double best = in.readDouble();
+			long time = in.readLong();
+			if (logWriter != null)
+				logWriter.write(String.format("%06d\t%10.8f\t%10.8f\t%06d\n", moveId, current,
+						best, time));
+			break;
+		}
+		case TraceWriter.JUMP:
+			if (logWriter != null)
+				logWriter.write("\n");
+			break;
+		case TraceWriter.INFO: {
+			int moveId = in.readInt();
+			double current = in.readDouble();
+			double best = in.readDouble();
+			long time = in.readLong();
+			String info = in.readUTF();
+			if (logWriter != null)
+				logWriter.write(String.format("%06d\t%10.8f\t%10.8f\t%06d\t%s\n", moveId, current,
+						best, time, info));
+			break;
+		}
+		case TraceWriter.OPTIMUM: {
+			int moveId = in.readInt();
+			double evaluation = in.readDouble();
+			long time = in.readLong();
+			String algorithmName = in.readUTF();
+			String info = in.readUTF();
+			long stateHash = in.readLong();
+			logOPT.write(String.format("%06d\t%10.8f\t%06d\t%s: %s %d\n", moveId, evaluation,
+					time, algorithmName, info, stateHash));
+			break;
+		}
+		case TraceWriter.LABEL: {
+			int moveId = in.readInt();
+			double evaluation = in.readDouble();
+			long time = in.readLong();
+			String labelText = in.readUTF();
+			logLAB.write(String.format("%06d\t%10.8f\t%06d\t%s\n", moveId, evaluation, time,
+					labelText));
+			break;
+		}
+		case TraceWriter.END:
+			logWriter = null;
+			break;
+		default:
+			throw new IOException("Unknown trace record " + kind);
+		}
+	}
+
+	private BufferedWriter getLogFile(int algorithmId) {
+		if (algorithmId == HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE)
+			return logHCF;
+		else if (algorithmId == HeuristicFactory.HILL_CLIMBING_STEEPEST)
+			return logHCS;
+		else if (algorithmId == HeuristicFactory.TABU_SEARCH)
+			return logTS;
+		else if (algorithmId == HeuristicFactory.TABU_SEARCH_DYNAMIC)
+			return logTSD;
+		else if (algorithmId == HeuristicFactory.SIMULATED_ANNEALING)
+			return logSA;
+		else
+			return null;
+	}
+
+	private void openLogFiles() throws IOException {
+		if (!directory.exists() && !directory.mkdirs())
+			throw new IOException("Unable to create " + directory.getAbsolutePath());
+		logHCS = createLogFile("HCS.dat");
+		logHCF = createLogFile("HCF.dat");
+		logTS = createLogFile("TS.dat");
+		logTSD = createLogFile("TSD.dat");
+		logSA = createLogFile("SA.dat");
+		logOPT = createLogFile("OPT.dat");
+		logLAB = createLogFile("LAB.dat");
+	}
+
+	private BufferedWriter createLogFile(String fileName) throws IOException {
+		return new BufferedWriter(new FileWriter(new File(directory, fileName), true), 1 << 16);
+	}
+
+	private void closeLogFiles() throws IOException {
+		Writer[] files = { logHCS, logHCF, logTS, logTSD, logSA, logOPT, logLAB };
+		for (Writer file : files)
+			if (file != null)
+				file.close();
+		logWriter = null;
+	}
+
+}
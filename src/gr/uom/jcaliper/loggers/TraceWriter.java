@@ -0,0 +1,310 @@
+package gr.uom.jcaliper.loggers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer of a binary search trace
+ * <p>
+ * The records are stored as primitives in a preallocated ring buffer; nothing is formatted or
+ * written by the searching thread. A background thread drains the buffer in batches to the
+ * trace file, and flushes it whenever the buffer runs empty. When the buffer is full the
+ * searching thread waits for the writer, so no record is ever lost. TraceConverter turns a
+ * trace into the .dat files of MoveLogger.
+ *
+ * @author Panagiotis Kouros
+ */
+public class TraceWriter implements Runnable {
+
+	private static final int CAPACITY = 1 << 15; // records
+	private static final int MASK = CAPACITY - 1;
+	private static final int BATCH = CAPACITY >> 2;
+	private static final long IDLE_NANOS = 1000000L; // 1 ms
+
+	private final File file;
+	private final Thread writer;
+
+	// the ring buffer
+	private final byte[] kinds = new byte[CAPACITY];
+	private final int[] algorithmIds = new int[CAPACITY];
+	private final int[] moveIds = new int[CAPACITY];
+	private final double[] currents = new double[CAPACITY];
+	private final double[] bests = new double[CAPACITY];
+	private final long[] times = new long[CAPACITY];
+	private final long[] hashes = new long[CAPACITY];
+	private final String[] names = new String[CAPACITY];
+	private final String[] texts = new String[CAPACITY];
+	private volatile long published = 0; // written by the producers only
+	private volatile long consumed = 0; // written by the writer only
+	private volatile boolean closed = false;
+
+	private DataOutputStream out;
+	private boolean unflushed = false;
+
+	// Constructors
+
+	/**
+	 * Creates the trace file and starts the writer thread
+	 *
+	 * @param file
+	 *            the trace file
+	 */
+	public TraceWriter(File file) {
+		this.file = file;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+					1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		} catch (IOException e) {
+			fail(e);
+		}
+		writer = new Thread(this, "Trace writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	// Methods (called by the searching threads)
+
+	public synchronized void start(int algorithmId, int moveId, double evaluation, long time) {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = START;
+		algorithmIds[slot] = algorithmId;
+		moveIds[slot] = moveId;
+		currents[slot] = evaluation;
+		times[slot] = time;
+		publish();
+	}
+
+	public synchronized void move(int moveId, double current, double best, long time) {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = MOVE;
+		moveIds[slot] = moveId;
+		currents[slot] = current;
+		bests[slot] = best;
+		times[slot] = time;
+		publish();
+	}
+
+	public synchronized void jump() {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = JUMP;
+		publish();
+	}
+
+	public synchronized void info(int moveId, double current, double best, long time, String info) {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = INFO;
+		moveIds[slot] = moveId;
+		currents[slot] = current;
+		bests[slot] = best;
+		times[slot] = time;
+		texts[slot] = info;
+		publish();
+	}
+
+	public synchronized void optimum(int moveId, double evaluation, long time,
+			String algorithmName, String info, long stateHash) {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = OPTIMUM;
+		moveIds[slot] = moveId;
+		currents[slot] = evaluation;
+		times[slot] = time;
+		names[slot] = algorithmName;
+		texts[slot] = info;
+		hashes[slot] = stateHash;
+		publish();
+	}
+
+	public synchronized void label(int moveId, double evaluation, long time, String labelText) {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = LABEL;
+		moveIds[slot] = moveId;
+		currents[slot] = evaluation;
+		times[slot] = time;
+		texts[slot] = labelText;
+		publish();
+	}
+
+	public synchronized void end() {
+		if (closed)
+			return;
+		int slot = claim();
+		kinds[slot] = END;
+		publish();
+	}
+
+	/**
+	 * Writes the pending records, closes the trace file and stops the writer thread. Records
+	 * logged afterwards are ignored.
+	 */
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		LockSupport.unpark(writer);
+		boolean interrupted = false;
+		while (writer.isAlive())
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * @return the slot of the next record, after waiting for the writer if the buffer is full
+	 */
+	private int claim() {
+		long next = published;
+		while (next - consumed >= CAPACITY) {
+			LockSupport.unpark(writer);
+			Thread.yield();
+		}
+		return (int) (next & MASK);
+	}
+
+	private void publish() {
+		published = published + 1;
+	}
+
+	// Methods (called by the writer thread)
+
+	@Override
+	public void run() {
+		while (true) {
+			boolean closing = closed;
+			long from = consumed;
+			long to = Math.min(published, from + BATCH);
+			if (from == to) {
+				if (closing)
+					break;
+				flush();
+				LockSupport.parkNanos(this, IDLE_NANOS);
+				continue;
+			}
+			for (long seq = from; seq < to; seq++)
+				write((int) (seq & MASK));
+			consumed = to;
+			unflushed = true;
+		}
+		if (out != null)
+			try {
+				out.close();
+			} catch (IOException e) {
+				fail(e);
+			}
+	}
+
+	private void write(int slot) {
+		String name = names[slot];
+		String text = texts[slot];
+		names[slot] = null;
+		texts[slot] = null;
+		if (out == null)
+			return;
+		try {
+			byte kind = kinds[slot];
+			out.writeByte(kind);
+			switch (kind) {
+			case START:
+				out.writeInt(algorithmIds[slot]);
+				out.writeInt(moveIds[slot]);
+				out.writeDouble(currents[slot]);
+				out.writeLong(times[slot]);
+				break;
+			case MOVE:
+				out.writeInt(moveIds[slot]);
+				out.writeDouble(currents[slot]);
+				out.writeDouble(bests[slot]);
+				out.writeLong(times[slot]);
+				break;
+			case INFO:
+				out.writeInt(moveIds[slot]);
+				out.writeDouble(currents[slot]);
+				out.writeDouble(bests[slot]);
+				out.writeLong(times[slot]);
+				out.writeUTF(String.valueOf(text));
+				break;
+			case OPTIMUM:
+				out.writeInt(moveIds[slot]);
+				out.writeDouble(currents[slot]);
+				out.writeLong(times[slot]);
+				out.writeUTF(String.valueOf(name));
+				out.writeUTF(String.valueOf(text));
+				out.writeLong(hashes[slot]);
+				break;
+			case LABEL:
+				out.writeInt(moveIds[slot]);
+				out.writeDouble(currents[slot]);
+				out.writeLong(times[slot]);
+				out.writeUTF(String.valueOf(text));
+				break;
+			default: // JUMP, END
+				break;
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void flush() {
+		if (!unflushed)
+			return;
+		unflushed = false;
+		if (out != null)
+			try {
+				out.flush();
+			} catch (IOException e) {
+				fail(e);
+			}
+	}
+
+	private void fail(IOException e) {
+		System.err.println("Unable to write to trace file " + file);
+		e.printStackTrace();
+		if (out != null)
+			try {
+				out.close();
+			} catch (IOException ignored) {
+				// already failed
+			}
+		out = null;
+	}
+
+	// Getters
+
+	public File getFile() {
+		return file;
+	}
+
+	// File format
+	static final int MAGIC = 0x43525452; // "CRTR"
+	static final int VERSION = 1;
+	static final byte START = 1;
+	static final byte MOVE = 2;
+	static final byte JUMP = 3;
+	static final byte INFO = 4;
+	static final byte OPTIMUM = 5;
+	static final byte LABEL = 6;
+	static final byte END = 7;
+
+}
@@ -3,29 +3,27 @@ package gr.uom.jcaliper.metrics;
 import gr.uom.jcaliper.system.EntitySet;
 import gr.uom.jcaliper.system.HashedClass;
 
-import java.util.TreeMap;
-
 /**
  * @author Panagiotis Kouros
  */
 public class EvaluatedClass extends HashedClass {
 
 	protected double evaluation;
-	protected TreeMap<Integer, Double> exitGain;
-	protected TreeMap<Integer, Double> entryGain;
+	protected GainTable exitGain;
+	protected GainTable entryGain;
 
 	public EvaluatedClass(EvaluatedClass evaluated) {
 		super(evaluated);
 		evaluation = evaluated.getEvaluation();
-		exitGain = evaluated.getExitCosts();
-		entryGain = evaluated.getEntryCosts();
+		exitGain = evaluated.getExitGains();
+		entryGain = evaluated.getEntryGains();
 	}
 
 	public EvaluatedClass(HashedClass unevaluated) {
 		super(unevaluated);
 		hash = unevaluated.getHash();
-		exitGain = new TreeMap<Integer, Double>();
-		entryGain = new TreeMap<Integer, Double>();
+		exitGain = GainTable.EMPTY;
+		entryGain = GainTable.EMPTY;
 	}
 
 	public double getEvaluation() {
@@ -41,33 +39,33 @@ public class EvaluatedClass extends HashedClass {
 	}
 
 	public double getExitGain(int entityId) {
-		Double result = exitGain.get(entityId);
-		if (result != null)
-			return result;
-		return 0;
+		return exitGain.get(entityId);
 	}
 
 	public double getEntryGain(int entityId) {
-		Double result = entryGain.get(entityId);
-		if (result != null)
-			return result;
-		return 0;
+		return entryGain.get(entityId);
 	}
 
-	public EntitySet candidatesForExit() {
-		return new EntitySet(exitGain.keySet());
+	/**
+	 * @return the exit gains table (shared, not copied)
+	 */
+	public GainTable getExitGains() {
+		return exitGain;
 	}
 
-	public EntitySet candidatesForEntry() {
-		return new EntitySet(entryGain.keySet());
+	/**
+	 * @return the entry gains table (shared, not copied)
+	 */
+	public GainTable getEntryGains() {
+		return entryGain;
 	}
 
-	private TreeMap<Integer, Double> getExitCosts() {
-		return exitGain;
+	public EntitySet candidatesForExit() {
+		return exitGain.keySet();
 	}
 
-	private TreeMap<Integer, Double> getEntryCosts() {
-		return entryGain;
+	public EntitySet candidatesForEntry() {
+		return entryGain.keySet();
 	}
 
 	private static final long serialVersionUID = 1L;
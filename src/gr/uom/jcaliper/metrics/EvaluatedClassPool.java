@@ -1,22 +1,24 @@
 package gr.uom.jcaliper.metrics;
 
 import java.util.Comparator;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
+ * Evaluated classes by hash. Safe for use by concurrent searches.
+ *
  * @author Panagiotis Kouros
  */
-public class EvaluatedClassPool extends TreeMap<Long, EvaluatedClass> {
+public class EvaluatedClassPool extends ConcurrentHashMap<Long, EvaluatedClass> {
 
-	private TreeSet<EvaluatedClass> indexByEvaluation;
+	private ConcurrentSkipListSet<EvaluatedClass> indexByEvaluation;
 
 	public EvaluatedClassPool(boolean biggerValuesAreBetter) {
 		super();
 		if (biggerValuesAreBetter)
-			indexByEvaluation = new TreeSet<EvaluatedClass>(new Descending());
+			indexByEvaluation = new ConcurrentSkipListSet<EvaluatedClass>(new Descending());
 		else
-			indexByEvaluation = new TreeSet<EvaluatedClass>(new Ascending());
+			indexByEvaluation = new ConcurrentSkipListSet<EvaluatedClass>(new Ascending());
 	}
 
 	@Override
@@ -28,7 +30,8 @@ public class EvaluatedClassPool extends TreeMap<Long, EvaluatedClass> {
 	@Override
 	public EvaluatedClass remove(Object hash) {
 		EvaluatedClass removed = super.remove(hash);
-		indexByEvaluation.remove(removed);
+		if (removed != null)
+			indexByEvaluation.remove(removed);
 		return removed;
 	}
 
@@ -0,0 +1,196 @@
+package gr.uom.jcaliper.metrics;
+
+import gr.uom.jcaliper.system.EntitySet;
+
+import java.util.Arrays;
+
+/**
+ * Cache of class evaluations (class hash -> evaluation)
+ * <p>
+ * Open addressing table with linear probing on primitive arrays. If a capacity is given, the
+ * cache never holds more entries: when it is full, an entry is evicted with the CLOCK policy
+ * (entries read since the last pass of the clock hand get a second chance). A capacity of 0
+ * means that the cache grows without limit.
+ *
+ * @author Panagiotis Kouros
+ */
+public class EvaluationCache {
+
+	private static final byte FREE = 0;
+	private static final byte USED = 1;
+	private static final byte REFERENCED = 2;
+
+	private final int capacity;
+	private long[] keys;
+	private double[] values;
+	private byte[] flags;
+	private int mask;
+	private int size = 0;
+	private int hand = 0;
+	private long evictions = 0;
+
+	// Constructors
+
+	/**
+	 * @param capacity
+	 *            maximum number of entries, or 0 for an unbounded cache
+	 */
+	public EvaluationCache(int capacity) {
+		this.capacity = (capacity > 0) ? capacity : 0;
+		allocate(tableLengthFor((capacity > 0) ? capacity : 1024));
+	}
+
+	// Methods
+
+	/**
+	 * @param key
+	 *            the class hash
+	 * @return the slot of the key, or -1 if the key is not cached
+	 */
+	public int indexOf(long key) {
+		int slot = slotOf(key);
+		while (flags[slot] != FREE) {
+			if (keys[slot] == key) {
+				if (capacity > 0)
+					flags[slot] = REFERENCED;
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param slot
+	 *            a slot returned by indexOf()
+	 * @return the cached evaluation
+	 */
+	public double valueAt(int slot) {
+		return values[slot];
+	}
+
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	public void put(long key, double value) {
+		int slot = indexOf(key);
+		if (slot >= 0) {
+			values[slot] = value;
+			return;
+		}
+		if (capacity > 0) {
+			if (size >= capacity)
+				evict();
+		} else if (size >= (flags.length >> 1) + (flags.length >> 2)) // 75% load
+			rehash(flags.length << 1);
+		slot = slotOf(key);
+		while (flags[slot] != FREE)
+			slot = (slot + 1) & mask;
+		keys[slot] = key;
+		values[slot] = value;
+		flags[slot] = USED;
+		size++;
+	}
+
+	public void clear() {
+		Arrays.fill(flags, FREE);
+		size = 0;
+		hand = 0;
+	}
+
+	/**
+	 * @return the number of cached evaluations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the maximum number of entries, or 0 if unbounded
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of entries evicted so far
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	// private methods
+
+	private int slotOf(long key) {
+		return (int) EntitySet.mix64(key) & mask;
+	}
+
+	private void evict() {
+		while (true) {
+			hand = (hand + 1) & mask;
+			if (flags[hand] == REFERENCED)
+				flags[hand] = USED; // second chance
+			else if (flags[hand] == USED) {
+				delete(hand);
+				evictions++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the entry of a slot, shifting back the following entries of its probe sequence
+	 */
+	private void delete(int slot) {
+		int free = slot;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			if (flags[next] == FREE)
+				break;
+			int home = slotOf(keys[next]);
+			// move the entry back, unless its home lies cyclically in (free, next]
+			boolean stays = (free <= next) ? ((free < home) && (home <= next))
+					: ((free < home) || (home <= next));
+			if (!stays) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				flags[free] = flags[next];
+				free = next;
+			}
+		}
+		flags[free] = FREE;
+		size--;
+	}
+
+	private void rehash(int length) {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		byte[] oldFlags = flags;
+		allocate(length);
+		for (int i = 0; i < oldFlags.length; i++)
+			if (oldFlags[i] != FREE) {
+				int slot = slotOf(oldKeys[i]);
+				while (flags[slot] != FREE)
+					slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				flags[slot] = oldFlags[i];
+			}
+	}
+
+	private void allocate(int length) {
+		keys = new long[length];
+		values = new double[length];
+		flags = new byte[length];
+		mask = length - 1;
+	}
+
+	private static int tableLengthFor(int entries) {
+		// keep the load factor under 75%
+		int length = Integer.highestOneBit(entries + (entries / 3) + 1);
+		return Math.max(16, length << 1);
+	}
+
+}
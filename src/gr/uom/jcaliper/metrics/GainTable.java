@@ -0,0 +1,126 @@
+package gr.uom.jcaliper.metrics;
+
+import gr.uom.jcaliper.system.EntitySet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable table of move gains (entity ID -> gain) of an evaluated class
+ * <p>
+ * Entity IDs are kept in a sorted int array and gains in a parallel double array, so a table
+ * costs 12 bytes per entry and lookups are binary searches. Candidates are accessed by index
+ * through {@link #keyAt(int)}, without creating any collection.
+ *
+ * @author Panagiotis Kouros
+ */
+public final class GainTable implements Serializable {
+
+	public static final GainTable EMPTY = new GainTable(new int[0], new double[0]);
+
+	private final int[] keys;
+	private final double[] values;
+
+	// Constructors
+
+	private GainTable(int[] keys, double[] values) {
+		this.keys = keys;
+		this.values = values;
+	}
+
+	// Methods
+
+	/**
+	 * @return the number of candidate entities
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param index
+	 *            position in the table, 0 &lt;= index &lt; size()
+	 * @return the entity ID at the given position (IDs are in ascending order)
+	 */
+	public int keyAt(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * @param index
+	 *            position in the table, 0 &lt;= index &lt; size()
+	 * @return the gain at the given position
+	 */
+	public double valueAt(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param entityId
+	 *            the entity ID
+	 * @return the position of the entity in the table, or a negative value if absent
+	 */
+	public int indexOf(int entityId) {
+		return Arrays.binarySearch(keys, entityId);
+	}
+
+	public boolean containsKey(int entityId) {
+		return indexOf(entityId) >= 0;
+	}
+
+	/**
+	 * @param entityId
+	 *            the entity ID
+	 * @return the gain of the entity, or 0 if the entity is not a candidate
+	 */
+	public double get(int entityId) {
+		int index = indexOf(entityId);
+		return (index >= 0) ? values[index] : 0;
+	}
+
+	/**
+	 * @return a new set with the candidate entity IDs
+	 */
+	public EntitySet keySet() {
+		return new EntitySet(keys);
+	}
+
+	/**
+	 * Collects gains in ascending entity ID order and creates the table
+	 */
+	public static final class Builder {
+
+		private int[] keys;
+		private double[] values;
+		private int size = 0;
+
+		public Builder(int expectedSize) {
+			keys = new int[expectedSize];
+			values = new double[expectedSize];
+		}
+
+		public Builder put(int entityId, double gain) {
+			if ((size > 0) && (entityId <= keys[size - 1]))
+				throw new IllegalArgumentException("Entity IDs must be added in ascending order");
+			if (size == keys.length) {
+				int capacity = (size < 4) ? 4 : size + (size >> 1);
+				keys = Arrays.copyOf(keys, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			keys[size] = entityId;
+			values[size++] = gain;
+			return this;
+		}
+
+		public GainTable build() {
+			if (size == 0)
+				return EMPTY;
+			if (size < keys.length)
+				return new GainTable(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+			return new GainTable(keys, values);
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
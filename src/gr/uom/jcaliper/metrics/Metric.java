@@ -5,14 +5,13 @@ package gr.uom.jcaliper.metrics;
 
 import gr.uom.jcaliper.explorer.CraCase;
 import gr.uom.jcaliper.explorer.CratState;
-import gr.uom.jcaliper.plugin.Activator;
-import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 import gr.uom.jcaliper.system.EntitySet;
 import gr.uom.jcaliper.system.HashedClass;
 
-import java.util.TreeMap;
-
-import org.eclipse.jface.preference.IPreferenceStore;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The interface of all fitness metrics
@@ -25,21 +24,67 @@ public abstract class Metric {
 	protected String shortName;
 	protected String info;
 	protected CraCase craCase;
+	protected final RunConfiguration configuration;
 
 	protected EvaluatedClassPool storedClasses;
-	protected TreeMap<Long, Double> storedValues = new TreeMap<Long, Double>();
+	protected StripedEvaluationCache storedValues;
+	// evaluations of previous runs on the same case (null if not configured)
+	protected PersistentEvaluationCache persistentValues;
+
+	// Statistics may be updated by concurrent searches
+	private final AtomicLong valuesHits = new AtomicLong();
+	private final AtomicLong valuesMisses = new AtomicLong();
+	private final AtomicLong classesHits = new AtomicLong();
+	private final AtomicLong classesMisses = new AtomicLong();
+	// Value searches of each thread, to tell apart the searches of concurrent algorithms
+	private final ThreadLocal<int[]> threadValueSearches = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	// Evaluations in progress (compute-if-absent)
+	private final PendingComputations<Double> pendingValues = new PendingComputations<Double>() {
+		@Override
+		protected Double lookup(long hash) {
+			Double value = storedValues.get(hash);
+			if ((value == null) && (persistentValues != null)) {
+				value = persistentValues.get(hash);
+				if (value != null)
+					storedValues.put(hash, value);
+			}
+			return value;
+		}
+
+		@Override
+		protected void store(long hash, Double value) {
+			storedValues.put(hash, value);
+			if (persistentValues != null)
+				persistentValues.put(hash, value);
+		}
+	};
+	private final PendingComputations<EvaluatedClass> pendingClasses = new PendingComputations<EvaluatedClass>() {
+		@Override
+		protected EvaluatedClass lookup(long hash) {
+			return storedClasses.get(hash);
+		}
 
-	private int valuesHits = 0;
-	private int valuesMisses = 0;
-	private int classesHits = 0;
-	private int classesMisses = 0;
-	
-	private IPreferenceStore store; 
-	private boolean deactivateMemoization;
+		@Override
+		protected void store(long hash, EvaluatedClass value) {
+			storedClasses.put(hash, value);
+		}
+	};
 
 	public Metric(CraCase craCase) {
 		this.craCase = craCase;
+		configuration = RunConfiguration.getCurrent();
+		storedValues = new StripedEvaluationCache(configuration.getEvaluationCacheCapacity());
 		storedClasses = new EvaluatedClassPool(toBeMaximized());
+		String storePath = configuration.getEvaluationStorePath();
+		if ((storePath.length() > 0) && !configuration.isMemoizationDeactivated())
+			persistentValues = new PersistentEvaluationCache(new File(storePath), getClass()
+					.getSimpleName(), craCase);
 		initializeCalculator();
 		createEvaluatedEmpty();
 		craCase.setInitial(new CratState(craCase, this));
@@ -59,49 +104,67 @@ public abstract class Metric {
 
 	// Concrete public methods
 
-	public final Double evaluateClass(HashedClass hashed) {
-		deactivateMemoization = Activator.getDefault().getPreferenceStore().getBoolean(Preferences.DEACTIVATE_MEMOIZATION);
+	public final Double evaluateClass(final HashedClass hashed) {
+		boolean deactivateMemoization = configuration.isMemoizationDeactivated();
 		long hash = hashed.getHash();
 		Double evaluation = getStoredValue(hash);
 		if (evaluation == null) {
-			evaluation = calculateClassEvaluation(hashed);
-			
 			// Deactivate memoization
-			if(!deactivateMemoization) {
-				storedValues.put(hash, evaluation);
-			}
-			
+			if (deactivateMemoization)
+				evaluation = calculateClassEvaluation(hashed);
+			else
+				evaluation = computeValueIfAbsent(hash, new Callable<Double>() {
+					@Override
+					public Double call() {
+						return calculateClassEvaluation(hashed);
+					}
+				});
 		}
-		
 		return evaluation;
 	}
 
-	public final EvaluatedClass getEvaluatedClass(HashedClass hashed) {
-		deactivateMemoization = Activator.getDefault().getPreferenceStore().getBoolean(Preferences.DEACTIVATE_MEMOIZATION);
+	public final EvaluatedClass getEvaluatedClass(final HashedClass hashed) {
+		boolean deactivateMemoization = configuration.isMemoizationDeactivated();
 		long hash = hashed.getHash();
-		if (storedClasses.containsKey(hash)) {
-			classesHits++;
-			return (storedClasses.get(hash));
-		} else {
-			classesMisses++;
-			EvaluatedClass evaluated = createEvaluatedClass(hashed);
-			
-			// Deactivate memoization
-			if(!deactivateMemoization) {
-				storedClasses.put(hash, evaluated);
-			}
+		EvaluatedClass evaluated = storedClasses.get(hash);
+		if (evaluated != null) {
+			classesHits.incrementAndGet();
 			return evaluated;
 		}
+		classesMisses.incrementAndGet();
+		// Deactivate memoization
+		if (deactivateMemoization)
+			return createEvaluatedClass(hashed);
+		return pendingClasses.computeIfAbsent(hash, new Callable<EvaluatedClass>() {
+			@Override
+			public EvaluatedClass call() {
+				return createEvaluatedClass(hashed);
+			}
+		});
 	}
 
 	public final Double getStoredValue(long hash) {
-		if (storedValues.containsKey(hash)) {
-			valuesHits++;
-			return storedValues.get(hash);
-		} else {
-			valuesMisses++;
-			return null;
-		}
+		Double value = storedValues.get(hash);
+		if (value != null)
+			valuesHits.incrementAndGet();
+		else
+			valuesMisses.incrementAndGet();
+		threadValueSearches.get()[0]++;
+		return value;
+	}
+
+	/**
+	 * Returns the stored value of a class hash, or calculates and stores it. Concurrent callers
+	 * asking for the same hash wait for one calculation.
+	 *
+	 * @param hash
+	 *            the class hash
+	 * @param calculation
+	 *            the calculation of the class evaluation
+	 * @return the class evaluation
+	 */
+	public final Double computeValueIfAbsent(long hash, Callable<Double> calculation) {
+		return pendingValues.computeIfAbsent(hash, calculation);
 	}
 
 	public final void storeValue(long hash, double value) {
@@ -111,6 +174,8 @@ public abstract class Metric {
 	public final void clear() {
 		if (storedValues != null)
 			storedValues.clear();
+		if (persistentValues != null)
+			persistentValues.flush();
 	}
 
 	@Override
@@ -137,14 +202,28 @@ public abstract class Metric {
 		return craCase;
 	}
 
+	/**
+	 * @return the run configuration read when the metric was created
+	 */
+	public final RunConfiguration getConfiguration() {
+		return configuration;
+	}
+
 	// Cache memory information
 
 	public int getValueSearches() {
-		return valuesHits + valuesMisses;
+		return (int) (valuesHits.get() + valuesMisses.get());
+	}
+
+	/**
+	 * @return the value searches made by the calling thread
+	 */
+	public int getThreadValueSearches() {
+		return threadValueSearches.get()[0];
 	}
 
 	public int getClassSearches() {
-		return classesHits + classesMisses;
+		return (int) (classesHits.get() + classesMisses.get());
 	}
 
 	// Cache memory presentation
@@ -162,18 +241,29 @@ public abstract class Metric {
 	public String getStoredValuesStatistics() {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("Stored Evaluations: %d\n", storedValues.size()));
-		int calls = valuesHits + valuesMisses;
+		if (storedValues.getCapacity() > 0)
+			sb.append(String.format("Capacity: %d, Evictions: %d\n", storedValues.getCapacity(),
+					storedValues.getEvictions()));
+		long valuesHits = this.valuesHits.get();
+		long valuesMisses = this.valuesMisses.get();
+		long calls = valuesHits + valuesMisses;
 		double hitsPerc = (100.0 * valuesHits) / calls;
 		double missesPerc = (100.0 * valuesMisses) / calls;
 		sb.append(String.format("%d searches: %d Hits (%4.2f%%), %d Misses (%4.2f%%)", calls,
 				valuesHits, hitsPerc, valuesMisses, missesPerc));
+		if (persistentValues != null)
+			sb.append(String.format("\nStored on disk: %d from previous runs, %d new (%s)",
+					persistentValues.getLoadedRecords(), persistentValues.getAppendedRecords(),
+					persistentValues.getFile()));
 		return sb.toString();
 	}
 
 	public String getStoredClassesStatistics() {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("Stored Classes: %d\n", storedClasses.size()));
-		int calls = classesHits + classesMisses;
+		long classesHits = this.classesHits.get();
+		long classesMisses = this.classesMisses.get();
+		long calls = classesHits + classesMisses;
 		double hitsPerc = (100.0 * classesHits) / calls;
 		double missesPerc = (100.0 * classesMisses) / calls;
 		sb.append(String.format("%d searches: %d Hits (%4.2f%%), %d Misses (%4.2f%%)", calls,
@@ -193,11 +283,14 @@ public abstract class Metric {
 
 	private final void createEvaluatedEmpty() {
 		EvaluatedClass empty = getEvaluatedClass(new HashedClass(new EntitySet()));
-		for (int entityId : craCase.getEntitySet()) {
+		EntitySet entitySet = craCase.getEntitySet();
+		GainTable.Builder gains = new GainTable.Builder(entitySet.size());
+		for (int entityId : entitySet) {
 			HashedClass oneMember = new HashedClass(entityId);
 			double evaluation = evaluateClass(oneMember);
-			empty.entryGain.put(entityId, evaluation);
+			gains.put(entityId, evaluation);
 		}
+		empty.entryGain = gains.build();
 	}
 
 }
@@ -0,0 +1,85 @@
+package gr.uom.jcaliper.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Compute-if-absent support for the memoization of a metric
+ * <p>
+ * Keeps the computations in progress by class hash. A thread asking for a hash that another
+ * thread is already computing waits for that result instead of computing it again.
+ *
+ * @author Panagiotis Kouros
+ */
+abstract class PendingComputations<V> {
+
+	private final ConcurrentHashMap<Long, FutureTask<V>> pending = new ConcurrentHashMap<Long, FutureTask<V>>();
+
+	// Methods to be overridden
+
+	/**
+	 * @return the stored result of the hash, or null if it is not stored
+	 */
+	protected abstract V lookup(long hash);
+
+	/**
+	 * Stores a computed result. Called before the computation stops being pending.
+	 */
+	protected abstract void store(long hash, V value);
+
+	// Methods
+
+	/**
+	 * Returns the stored result of the hash, or computes and stores it. Each hash is computed
+	 * by one thread at a time.
+	 *
+	 * @param hash
+	 *            the class hash
+	 * @param computation
+	 *            the computation of the result
+	 * @return the result
+	 */
+	public V computeIfAbsent(long hash, Callable<V> computation) {
+		FutureTask<V> task = new FutureTask<V>(computation);
+		FutureTask<V> running = pending.putIfAbsent(hash, task);
+		if (running != null)
+			return waitFor(running);
+		try {
+			// another thread may have stored it after our lookup
+			V stored = lookup(hash);
+			if (stored != null)
+				return stored;
+			task.run();
+			V value = waitFor(task);
+			store(hash, value);
+			return value;
+		} finally {
+			pending.remove(hash, task);
+		}
+	}
+
+	private V waitFor(FutureTask<V> task) {
+		boolean interrupted = false;
+		try {
+			while (true)
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+}
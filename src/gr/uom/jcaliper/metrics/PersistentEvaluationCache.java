@@ -0,0 +1,222 @@
+package gr.uom.jcaliper.metrics;
+
+import gr.uom.jcaliper.explorer.CraCase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class evaluations kept on disk across runs
+ * <p>
+ * There is one file per metric and case fingerprint, so a file is only used for the exact
+ * system (entity relations and box type) it was computed on. The file is a header followed by
+ * (class hash, evaluation) records. Its records are loaded at the first lookup, in chunks
+ * through a small buffer (the file is not mapped, so it can be truncated or replaced right
+ * after); the evaluations computed during the run are appended to it. A partially written last
+ * record is ignored. An I/O error disables the cache for the rest of the run: the metric then
+ * simply calculates the evaluations.
+ *
+ * @author Panagiotis Kouros
+ */
+public class PersistentEvaluationCache {
+
+	private final File file;
+	private final long fingerprint;
+	private EvaluationCache values;
+	private DataOutputStream out;
+	private int loadedRecords;
+	private int appendedRecords;
+	private boolean failed;
+
+	// Constructors
+
+	/**
+	 * @param directory
+	 *            the directory of the cache files
+	 * @param metricId
+	 *            the metric whose evaluations are cached (e.g. its class name)
+	 * @param craCase
+	 *            the case the evaluations are calculated on
+	 */
+	public PersistentEvaluationCache(File directory, String metricId, CraCase craCase) {
+		fingerprint = craCase.getFingerprint() ^ (metricId.hashCode() * 0x9E3779B97F4A7C15L);
+		file = new File(directory, String.format("%s-%016x.evaluations", metricId, fingerprint));
+	}
+
+	// Methods
+
+	/**
+	 * @param hash
+	 *            the class hash
+	 * @return the evaluation of a previous run (or of this run), or null
+	 */
+	public synchronized Double get(long hash) {
+		if (values == null)
+			load();
+		int slot = values.indexOf(hash);
+		return (slot >= 0) ? values.valueAt(slot) : null;
+	}
+
+	/**
+	 * Appends an evaluation calculated in this run
+	 */
+	public synchronized void put(long hash, double value) {
+		if (values == null)
+			load();
+		if (values.containsKey(hash))
+			return;
+		values.put(hash, value);
+		if (failed)
+			return;
+		try {
+			if (out == null)
+				openForAppend();
+			out.writeLong(hash);
+			out.writeDouble(value);
+			appendedRecords++;
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Writes the appended evaluations and closes the file (until the next put)
+	 */
+	public synchronized void flush() {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} catch (IOException e) {
+			fail(e);
+		}
+		out = null;
+	}
+
+	private void load() {
+		values = new EvaluationCache(0);
+		if (!file.exists())
+			return;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				long size = channel.size();
+				if (size < HEADER_SIZE)
+					return;
+				ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_READ);
+				buffer.limit(HEADER_SIZE);
+				if (!fill(channel, buffer) || (buffer.getInt() != MAGIC)
+						|| (buffer.getInt() != VERSION) || (buffer.getLong() != fingerprint))
+					return; // another file with the same name: it is replaced
+				long records = (size - HEADER_SIZE) / RECORD_SIZE;
+				while (loadedRecords < records) {
+					int chunk = (int) Math.min(RECORDS_PER_READ, records - loadedRecords);
+					buffer.clear();
+					buffer.limit(chunk * RECORD_SIZE);
+					if (!fill(channel, buffer))
+						return; // the file was truncated meanwhile
+					for (int i = 0; i < chunk; i++)
+						values.put(buffer.getLong(), buffer.getDouble());
+					loadedRecords += chunk;
+				}
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Reads from the channel until the buffer is full, and flips it
+	 *
+	 * @return false if the file ended first
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				return false;
+		buffer.flip();
+		return true;
+	}
+
+	private void openForAppend() throws IOException {
+		long size = file.exists() ? file.length() : 0;
+		if ((size >= HEADER_SIZE) && isOwnHeader()) {
+			long partial = (size - HEADER_SIZE) % RECORD_SIZE;
+			if (partial != 0) {
+				// drop a partially written record
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(size - partial);
+				} finally {
+					raf.close();
+				}
+			}
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		} else {
+			file.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(fingerprint);
+		}
+	}
+
+	private boolean isOwnHeader() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return (raf.readInt() == MAGIC) && (raf.readInt() == VERSION)
+					&& (raf.readLong() == fingerprint);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void fail(IOException e) {
+		failed = true;
+		System.err.println("Evaluation cache disabled: " + file + ": " + e.getMessage());
+		if (out != null)
+			try {
+				out.close();
+			} catch (IOException ignored) {
+				// already failed
+			}
+		out = null;
+	}
+
+	// Getters
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of evaluations loaded from previous runs
+	 */
+	public synchronized int getLoadedRecords() {
+		return loadedRecords;
+	}
+
+	/**
+	 * @return the number of evaluations appended in this run
+	 */
+	public synchronized int getAppendedRecords() {
+		return appendedRecords;
+	}
+
+	// File format
+	private static final int MAGIC = 0x43524556; // "CREV"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 16;
+	private static final int RECORDS_PER_READ = 4096;
+
+}
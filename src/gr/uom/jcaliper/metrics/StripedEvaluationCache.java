@@ -0,0 +1,99 @@
+package gr.uom.jcaliper.metrics;
+
+import gr.uom.jcaliper.system.EntitySet;
+
+/**
+ * Thread-safe cache of class evaluations
+ * <p>
+ * The keys are spread over a fixed number of {@link EvaluationCache} stripes, each guarded by
+ * its own lock, so threads working on different classes rarely wait for each other. The
+ * capacity (if any) is divided equally among the stripes.
+ *
+ * @author Panagiotis Kouros
+ */
+public class StripedEvaluationCache {
+
+	private static final int STRIPES = 32; // power of 2
+
+	private final EvaluationCache[] stripes = new EvaluationCache[STRIPES];
+	private final int capacity;
+
+	// Constructors
+
+	/**
+	 * @param capacity
+	 *            maximum number of entries, or 0 for an unbounded cache
+	 */
+	public StripedEvaluationCache(int capacity) {
+		this.capacity = (capacity > 0) ? capacity : 0;
+		int stripeCapacity = (capacity > 0) ? ((capacity + STRIPES - 1) / STRIPES) : 0;
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new EvaluationCache(stripeCapacity);
+	}
+
+	// Methods
+
+	/**
+	 * @param key
+	 *            the class hash
+	 * @return the cached evaluation, or null if the key is not cached
+	 */
+	public Double get(long key) {
+		EvaluationCache stripe = stripeOf(key);
+		synchronized (stripe) {
+			int slot = stripe.indexOf(key);
+			return (slot >= 0) ? stripe.valueAt(slot) : null;
+		}
+	}
+
+	public void put(long key, double value) {
+		EvaluationCache stripe = stripeOf(key);
+		synchronized (stripe) {
+			stripe.put(key, value);
+		}
+	}
+
+	public void clear() {
+		for (EvaluationCache stripe : stripes)
+			synchronized (stripe) {
+				stripe.clear();
+			}
+	}
+
+	/**
+	 * @return the number of cached evaluations
+	 */
+	public int size() {
+		int size = 0;
+		for (EvaluationCache stripe : stripes)
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		return size;
+	}
+
+	/**
+	 * @return the maximum number of entries, or 0 if unbounded
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of entries evicted so far
+	 */
+	public long getEvictions() {
+		long evictions = 0;
+		for (EvaluationCache stripe : stripes)
+			synchronized (stripe) {
+				evictions += stripe.getEvictions();
+			}
+		return evictions;
+	}
+
+	private EvaluationCache stripeOf(long key) {
+		// use the high bits: the low bits select the slot inside the stripe
+		return stripes[(int) (EntitySet.mix64(key) >>> 59) & (STRIPES - 1)];
+	}
+
+}
@@ -1,5 +1,6 @@
 package gr.uom.jcaliper.metrics.ep;
 
+import gr.uom.jcaliper.metrics.GainTable;
 import gr.uom.jcaliper.metrics.Metric;
 import gr.uom.jcaliper.metrics.MetricCalculator;
 import gr.uom.jcaliper.preferences.Preferences;
@@ -8,6 +9,8 @@ import gr.uom.jcaliper.system.EntitySet;
 import gr.uom.jcaliper.system.HashedClass;
 import gr.uom.jcaliper.system.IEntityPool;
 
+import java.util.concurrent.Callable;
+
 /**
  * Data structures designed to speed up Entity Placement calculation
  * 
@@ -39,10 +42,16 @@ public abstract class EPCalculator extends MetricCalculator {
 	@Override
 	protected void calculateMoveGains() {
 		initializeWelcome();
-		for (int entId : exitCandidates())
-			exitGain.put(entId, exitGainOf(entId));
-		for (int entId : entryCandidates())
-			entryGain.put(entId, entryGainOf(entId));
+		EntitySet candidates = exitCandidates();
+		GainTable.Builder gains = new GainTable.Builder(candidates.size());
+		for (int entId : candidates)
+			gains.put(entId, exitGainOf(entId));
+		exitGain = gains.build();
+		candidates = entryCandidates();
+		gains = new GainTable.Builder(candidates.size());
+		for (int entId : candidates)
+			gains.put(entId, entryGainOf(entId));
+		entryGain = gains.build();
 	}
 
 	// Abstract methods
@@ -87,7 +96,8 @@ public abstract class EPCalculator extends MetricCalculator {
 	protected final double innerDistancesTotal(EntitySet theClass, EntitySet intRelatives) {
 		int classSize = theClass.size() - 1; // exclude the measured entity
 		double innerSimilaritiesTotal = 0.0;
-		for (int entId : intRelatives)
+		for (int entId = intRelatives.nextId(Integer.MIN_VALUE); entId != EntitySet.NONE; entId = intRelatives
+				.nextId(entId + 1))
 			innerSimilaritiesTotal += similarity(entId, theClass, classSize);
 		double innerDistancesTotal = theClass.size() - innerSimilaritiesTotal;
 		if (PRINT_DEBUG_INFO)
@@ -100,20 +110,26 @@ public abstract class EPCalculator extends MetricCalculator {
 			int nExternal) {
 		int classSize = theClass.size(); // the full class size
 		double outerSimilaritiesTotal = 0.0;
-		for (int entId : extRelatives)
+		for (int entId = extRelatives.nextId(Integer.MIN_VALUE); entId != EntitySet.NONE; entId = extRelatives
+				.nextId(entId + 1))
 			outerSimilaritiesTotal += similarity(entId, theClass, classSize);
-		double outerDistancesTotal = nExternal - outerSimilaritiesTotal;
-		if (outerDistancesTotal < 1e-10) // if is 0
-			outerDistancesTotal = 1.0 / nEntities; // set it to any too small number
+		double outerDistancesTotal = outerDistancesTotal(nExternal, outerSimilaritiesTotal);
 		if (PRINT_DEBUG_INFO)
 			System.out.format("\t\tOuterDistance = (%d-%8.6f)/%d = %8.6f\n", nExternal,
 					outerSimilaritiesTotal, nExternal, outerDistancesTotal / nExternal);
 		return outerDistancesTotal;
 	}
 
+	protected final double outerDistancesTotal(int nExternal, double outerSimilaritiesTotal) {
+		double outerDistancesTotal = nExternal - outerSimilaritiesTotal;
+		if (outerDistancesTotal < 1e-10) // if is 0
+			outerDistancesTotal = 1.0 / nEntities; // set it to any too small number
+		return outerDistancesTotal;
+	}
+
 	protected final double similarity(int entId, EntitySet theClass, int classSize) {
 		EntitySet entitySet = entities.getEntity(entId).getEntitySet();
-		int intersectionSize = theClass.intersection(entitySet).size();
+		int intersectionSize = theClass.intersectionSize(entitySet);
 		if (intersectionSize == 0)
 			return 0.0;
 		int unionSize = (classSize + entitySet.size()) - intersectionSize;
@@ -124,51 +140,71 @@ public abstract class EPCalculator extends MetricCalculator {
 		return similarity;
 	}
 
-	private final double exitGainOf(int moving) {
+	private final double exitGainOf(final int moving) {
 		if (PRINT_DEBUG_INFO)
 			System.out.format("\t\tcalculating exit gain of %d...\n", moving);
-		// Construct the resulting new class
-		EntitySet newClass = without(moving);
-		long hash = newClass.calculateHash();
+		// The hash of the resulting new class
+		long hash = hashWithout(moving);
 		// Try to get a known class evaluation
 		Double newEvaluation = metric.getStoredValue(hash);
-		// If not available, calculate and store it
-		if (newEvaluation == null) {
-			EntitySet newIntRelatives = internalRelatives.without(moving);
-			EntitySet newExtRelatives = externalRelatives.plus(moving);
-			newEvaluation = calculateClassEvaluation(newClass, newIntRelatives, newExtRelatives);
-			metric.storeValue(hash, newEvaluation);
-		}
+		// If not available, construct the new class, calculate and store it
+		if (newEvaluation == null)
+			newEvaluation = metric.computeValueIfAbsent(hash, new Callable<Double>() {
+				@Override
+				public Double call() {
+					return evaluationWithout(moving);
+				}
+			});
 		if (PRINT_DEBUG_INFO)
 			System.out.format("\t\texit gain of %d = %8.6f\n", moving, newEvaluation - evaluation);
 		return (newEvaluation - evaluation);
 	}
 
-	private final double entryGainOf(int moving) {
+	private final double entryGainOf(final int moving) {
 		if (PRINT_DEBUG_INFO)
 			System.out.format("\t\tcalculating entry gain of %d...\n", moving);
-		// Construct the resulting new class
-		EntitySet newClass = plus(moving);
-		long hash = newClass.calculateHash();
+		// The hash of the resulting new class
+		long hash = hashPlus(moving);
 		// Try to get a known class evaluation
 		Double newEvaluation = metric.getStoredValue(hash);
-		// If not available, calculate and store it
-		if (newEvaluation == null) {
-			EntitySet entityRelatives = entities.getEntity(moving).getRelatives();
-			EntitySet newIntRelatives = entityRelatives.intersection(newClass);
-			newIntRelatives.addAll(internalRelatives);
-			newIntRelatives.add(moving);
-			EntitySet newExtRelatives = entityRelatives.difference(newClass);
-			newExtRelatives.addAll(externalRelatives);
-			newExtRelatives.remove(moving);
-			newEvaluation = calculateClassEvaluation(newClass, newIntRelatives, newExtRelatives);
-			metric.storeValue(hash, newEvaluation);
-		}
+		// If not available, construct the new class, calculate and store it
+		if (newEvaluation == null)
+			newEvaluation = metric.computeValueIfAbsent(hash, new Callable<Double>() {
+				@Override
+				public Double call() {
+					return evaluationPlus(moving);
+				}
+			});
 		if (PRINT_DEBUG_INFO)
 			System.out.format("\t\tentry gain of %d = %8.6f\n", moving, newEvaluation - evaluation);
 		return (newEvaluation - evaluation);
 	}
 
+	/**
+	 * @return the evaluation of this class without the moving entity
+	 */
+	protected double evaluationWithout(int moving) {
+		EntitySet newClass = without(moving);
+		EntitySet newIntRelatives = internalRelatives.without(moving);
+		EntitySet newExtRelatives = externalRelatives.plus(moving);
+		return calculateClassEvaluation(newClass, newIntRelatives, newExtRelatives);
+	}
+
+	/**
+	 * @return the evaluation of this class with the moving entity added
+	 */
+	protected double evaluationPlus(int moving) {
+		EntitySet newClass = plus(moving);
+		EntitySet entityRelatives = entities.getEntity(moving).getRelatives();
+		EntitySet newIntRelatives = entityRelatives.intersection(newClass);
+		newIntRelatives.addAll(internalRelatives);
+		newIntRelatives.add(moving);
+		EntitySet newExtRelatives = entityRelatives.difference(newClass);
+		newExtRelatives.addAll(externalRelatives);
+		newExtRelatives.remove(moving);
+		return calculateClassEvaluation(newClass, newIntRelatives, newExtRelatives);
+	}
+
 	// Don't modify next line. Change the static value in class Preferences
 	private static final boolean PRINT_DEBUG_INFO = Preferences.PRINT_DEBUG_INFO;
 
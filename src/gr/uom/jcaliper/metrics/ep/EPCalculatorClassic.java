@@ -1,6 +1,5 @@
 package gr.uom.jcaliper.metrics.ep;
 
-import gr.uom.jcaliper.plugin.Activator;
 import gr.uom.jcaliper.preferences.Preferences;
 import gr.uom.jcaliper.system.CratEntity;
 import gr.uom.jcaliper.system.EntitySet;
@@ -9,7 +8,7 @@ import gr.uom.jcaliper.system.HashedClass;
 /**
  * Data structures designed to speed up Entity Placement calculation
  */
-public class EPCalculatorClassic extends EPCalculator {
+public class EPCalculatorClassic extends EPCalculatorIncremental {
 
 	protected EPCalculatorClassic(HashedClass prototype, EPMetric metric) {
 		super(prototype, metric);
@@ -20,7 +19,8 @@ public class EPCalculatorClassic extends EPCalculator {
 	@Override
 	protected void initializeWelcome() {
 		EntitySet forbidden = new EntitySet();
-		boolean deactivateNeighborhoodReduction = Activator.getDefault().getPreferenceStore().getBoolean("DEACTIVATE_NEIGHBOURHOOD_REDUCTION");
+		boolean deactivateNeighborhoodReduction = metric.getConfiguration()
+				.isNeighbourhoodReductionDeactivated();
 		for (int entityId : this) {
 			CratEntity entity = entities.getEntity(entityId);
 			if(!deactivateNeighborhoodReduction) {
@@ -56,6 +56,16 @@ public class EPCalculatorClassic extends EPCalculator {
 		return result;
 	}
 
+	@Override
+	protected double calculateEvaluation(int classSize, double innerSimilaritiesTotal,
+			int nExtRelatives, double outerSimilaritiesTotal) {
+		double result = (classSize - innerSimilaritiesTotal) / nEntities;
+		int nExternal = nEntities - classSize;
+		if (nExternal > 0)
+			result *= nExternal / outerDistancesTotal(nExternal, outerSimilaritiesTotal);
+		return result;
+	}
+
 	private static final long serialVersionUID = 1L;
 
 	// Don't modify next line. Change the static value in class Preferences
@@ -0,0 +1,231 @@
+package gr.uom.jcaliper.metrics.ep;
+
+import gr.uom.jcaliper.metrics.Metric;
+import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.system.EntitySet;
+import gr.uom.jcaliper.system.HashedClass;
+
+import java.util.Arrays;
+
+/**
+ * Entity Placement calculation whose evaluation depends only on the class size and the similarity
+ * totals of its relatives, so that the gain of a single entity move is derived from the
+ * intersection counts of the class
+ * 
+ * @author Panagiotis Kouros
+ */
+public abstract class EPCalculatorIncremental extends EPCalculator {
+
+	// Relatives of the class (ascending), while the move gains are calculated
+	private int[] relativeIds;
+	private int[] relativeIntersections; // entity set of each relative intersected with the class
+	private int[] relativeSetSizes;
+	private boolean[] relativeInside;
+	private MoveTotals exitTotals;
+	private MoveTotals entryTotals;
+	private int[] affectedIds = new int[16];
+
+	protected EPCalculatorIncremental(HashedClass prototype, Metric metric) {
+		super(prototype, metric);
+	}
+
+	// Abstract methods
+
+	/**
+	 * Same as {@link #calculateClassEvaluation(EntitySet, EntitySet, EntitySet)}, given the
+	 * similarity totals instead of the sets
+	 */
+	protected abstract double calculateEvaluation(int classSize, double innerSimilaritiesTotal,
+			int nExtRelatives, double outerSimilaritiesTotal);
+
+	// Overridden methods
+
+	@Override
+	protected void calculateMoveGains() {
+		if (PRINT_DEBUG_INFO) { // print the set based calculation
+			super.calculateMoveGains();
+			return;
+		}
+		initializeIntersections();
+		super.calculateMoveGains();
+		releaseIntersections();
+	}
+
+	@Override
+	protected double evaluationWithout(int moving) {
+		if (relativeIds == null)
+			return super.evaluationWithout(moving);
+		return deltaEvaluation(moving, false);
+	}
+
+	@Override
+	protected double evaluationPlus(int moving) {
+		if (relativeIds == null)
+			return super.evaluationPlus(moving);
+		return deltaEvaluation(moving, true);
+	}
+
+	// Incremental calculation of single entity moves
+
+	/**
+	 * Keeps the intersection of the entity set of each relative with the class. An exit (or
+	 * entry) changes the class size, and so the similarity of every relative, but the class size
+	 * after an exit (or entry) is the same for all candidates: these similarities and their
+	 * running totals are calculated once per class.
+	 */
+	private final void initializeIntersections() {
+		int nRelatives = internalRelatives.size() + externalRelatives.size();
+		relativeIds = new int[nRelatives];
+		relativeIntersections = new int[nRelatives];
+		relativeSetSizes = new int[nRelatives];
+		relativeInside = new boolean[nRelatives];
+		int i = 0;
+		int intId = internalRelatives.nextId(Integer.MIN_VALUE);
+		int extId = externalRelatives.nextId(Integer.MIN_VALUE);
+		while (i < nRelatives) {
+			int entId;
+			if ((extId == EntitySet.NONE) || ((intId != EntitySet.NONE) && (intId < extId))) {
+				entId = intId;
+				intId = internalRelatives.nextId(intId + 1);
+				relativeInside[i] = true;
+			} else {
+				entId = extId;
+				extId = externalRelatives.nextId(extId + 1);
+			}
+			EntitySet entitySet = entities.getEntity(entId).getEntitySet();
+			relativeIds[i] = entId;
+			relativeIntersections[i] = intersectionSize(entitySet);
+			relativeSetSizes[i] = entitySet.size();
+			i++;
+		}
+		exitTotals = new MoveTotals(size() - 1);
+		entryTotals = new MoveTotals(size() + 1);
+	}
+
+	private final void releaseIntersections() {
+		relativeIds = null;
+		relativeIntersections = null;
+		relativeSetSizes = null;
+		relativeInside = null;
+		exitTotals = null;
+		entryTotals = null;
+	}
+
+	/**
+	 * The similarities of the relatives for a new class size, and their totals in ascending
+	 * order of the relatives
+	 */
+	private final class MoveTotals {
+		final int newSize;
+		final double[] similarity;
+		final double[] innerBefore; // total of the inner similarities before each relative
+		final double[] outerBefore;
+		final int[] externalBefore;
+
+		MoveTotals(int newSize) {
+			this.newSize = newSize;
+			int nRelatives = relativeIds.length;
+			similarity = new double[nRelatives];
+			innerBefore = new double[nRelatives + 1];
+			outerBefore = new double[nRelatives + 1];
+			externalBefore = new int[nRelatives + 1];
+			for (int i = 0; i < nRelatives; i++) {
+				boolean inside = relativeInside[i];
+				similarity[i] = similarity(relativeIntersections[i], relativeSetSizes[i],
+						inside ? newSize - 1 : newSize);
+				innerBefore[i + 1] = inside ? innerBefore[i] + similarity[i] : innerBefore[i];
+				outerBefore[i + 1] = inside ? outerBefore[i] : outerBefore[i] + similarity[i];
+				externalBefore[i + 1] = inside ? externalBefore[i] : externalBefore[i] + 1;
+			}
+		}
+	}
+
+	/**
+	 * Evaluates this class with one entity more or less. The relatives of the new class are the
+	 * ones the set based calculation would get, and the similarities are summed in the same
+	 * (ascending) order, so the result is the same to the last bit. Only the moving entity and its
+	 * relatives (the entities with the moving one in their entity sets) change their similarity;
+	 * the totals up to the first of them are taken as they are.
+	 */
+	private final double deltaEvaluation(int moving, boolean entering) {
+		MoveTotals totals = entering ? entryTotals : exitTotals;
+		int change = entering ? 1 : -1;
+		// The moving entity and its relatives, ascending
+		EntitySet movingRelatives = entities.getEntity(moving).getRelatives();
+		if (affectedIds.length <= movingRelatives.size())
+			affectedIds = new int[movingRelatives.size() + 1];
+		int nAffected = 0;
+		for (int entId = movingRelatives.nextId(Integer.MIN_VALUE); entId != EntitySet.NONE; entId = movingRelatives
+				.nextId(entId + 1)) {
+			if (((nAffected == 0) || (affectedIds[nAffected - 1] < moving)) && (entId > moving))
+				affectedIds[nAffected++] = moving;
+			affectedIds[nAffected++] = entId;
+		}
+		if ((nAffected == 0) || (affectedIds[nAffected - 1] < moving))
+			affectedIds[nAffected++] = moving;
+		// Continue the totals from the first affected relative
+		int i = Arrays.binarySearch(relativeIds, affectedIds[0]);
+		if (i < 0)
+			i = -(i + 1);
+		double innerSimilaritiesTotal = totals.innerBefore[i];
+		double outerSimilaritiesTotal = totals.outerBefore[i];
+		int nExtRelatives = totals.externalBefore[i];
+		int j = 0;
+		while ((i < relativeIds.length) || (j < nAffected)) {
+			boolean unaffected = (j == nAffected)
+					|| ((i < relativeIds.length) && (relativeIds[i] < affectedIds[j]));
+			if (unaffected) {
+				if (relativeInside[i])
+					innerSimilaritiesTotal += totals.similarity[i];
+				else {
+					outerSimilaritiesTotal += totals.similarity[i];
+					nExtRelatives++;
+				}
+				i++;
+				continue;
+			}
+			int entId = affectedIds[j++];
+			int intersectionSize, entitySetSize;
+			boolean inside;
+			if ((i < relativeIds.length) && (relativeIds[i] == entId)) {
+				intersectionSize = relativeIntersections[i];
+				entitySetSize = relativeSetSizes[i];
+				inside = relativeInside[i];
+				i++;
+			} else { // a new relative
+				EntitySet entitySet = entities.getEntity(entId).getEntitySet();
+				intersectionSize = intersectionSize(entitySet);
+				entitySetSize = entitySet.size();
+				inside = contains(entId);
+			}
+			if (entId == moving)
+				inside = entering;
+			else
+				intersectionSize += change;
+			if (inside)
+				innerSimilaritiesTotal += similarity(intersectionSize, entitySetSize,
+						totals.newSize - 1);
+			else {
+				outerSimilaritiesTotal += similarity(intersectionSize, entitySetSize,
+						totals.newSize);
+				nExtRelatives++;
+			}
+		}
+		return calculateEvaluation(totals.newSize, innerSimilaritiesTotal, nExtRelatives,
+				outerSimilaritiesTotal);
+	}
+
+	private static final double similarity(int intersectionSize, int entitySetSize,
+			int classSize) {
+		if (intersectionSize == 0)
+			return 0.0;
+		int unionSize = (classSize + entitySetSize) - intersectionSize;
+		return ((double) intersectionSize) / unionSize;
+	}
+
+	// Don't modify next line. Change the static value in class Preferences
+	private static final boolean PRINT_DEBUG_INFO = Preferences.PRINT_DEBUG_INFO;
+
+	private static final long serialVersionUID = 1L;
+
+}
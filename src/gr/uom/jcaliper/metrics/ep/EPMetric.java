@@ -9,6 +9,8 @@ import gr.uom.jcaliper.metrics.Metric;
 import gr.uom.jcaliper.preferences.Preferences;
 import gr.uom.jcaliper.system.HashedClass;
 
+import java.util.concurrent.Callable;
+
 /**
  * The Entity Placement metric
  * 
@@ -50,15 +52,18 @@ public class EPMetric extends Metric {
 	protected final EvaluatedClass createEvaluatedClass(HashedClass prototype) {
 		if (PRINT_DEBUG_INFO)
 			System.out.format("Creating Evaluated Class: %s\n", prototype);
-		EPCalculator calcClass = calculation.getCalculator(prototype, this);
+		final EPCalculator calcClass = calculation.getCalculator(prototype, this);
 		long hash = calcClass.getHash();
 		Double storedValue = getStoredValue(hash);
-		if (storedValue != null)
-			calcClass.setEvaluation(storedValue);
-		else {
-			calcClass.calculateClassEvaluation();
-			storedValues.put(hash, calcClass.getEvaluation());
-		}
+		if (storedValue == null)
+			storedValue = computeValueIfAbsent(hash, new Callable<Double>() {
+				@Override
+				public Double call() {
+					calcClass.calculateClassEvaluation();
+					return calcClass.getEvaluation();
+				}
+			});
+		calcClass.setEvaluation(storedValue);
 		calcClass.calculateMoveGains();
 		return new EvaluatedClass(calcClass);
 	}
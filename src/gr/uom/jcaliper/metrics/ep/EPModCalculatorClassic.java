@@ -8,7 +8,7 @@ import gr.uom.jcaliper.system.HashedClass;
 /**
  * Data structures designed to speed up Entity Placement calculation
  */
-public class EPModCalculatorClassic extends EPCalculator {
+public class EPModCalculatorClassic extends EPCalculatorIncremental {
 
 	protected EPModCalculatorClassic(HashedClass prototype, EPMetric metric) {
 		super(prototype, metric);
@@ -49,6 +49,16 @@ public class EPModCalculatorClassic extends EPCalculator {
 		return result;
 	}
 
+	@Override
+	protected double calculateEvaluation(int classSize, double innerSimilaritiesTotal,
+			int nExtRelatives, double outerSimilaritiesTotal) {
+		double result = (classSize - innerSimilaritiesTotal) / nEntities;
+		int nExternal = nExtRelatives;
+		if (nExternal > 0)
+			result *= nExternal / outerDistancesTotal(nExternal, outerSimilaritiesTotal);
+		return result;
+	}
+
 	// Calculation methods for the classic model
 
 	private static final long serialVersionUID = 1L;
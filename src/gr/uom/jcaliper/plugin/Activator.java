@@ -1,5 +1,10 @@
 package gr.uom.jcaliper.plugin;
 
+import gr.uom.jcaliper.heuristics.HeuristicFactory;
+import gr.uom.jcaliper.preferences.Preferences;
+import gr.uom.jcaliper.preferences.RunConfiguration;
+
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
@@ -63,4 +68,41 @@ public class Activator extends AbstractUIPlugin {
 	public static ImageDescriptor getImageDescriptor(String path) {
 		return imageDescriptorFromPlugin(PLUGIN_ID, path);
 	}
+
+	/**
+	 * Creates the settings of an optimization run from the preference store
+	 * 
+	 * @return the run configuration
+	 */
+	public RunConfiguration createRunConfiguration() {
+		IPreferenceStore store = getPreferenceStore();
+		return new RunConfiguration.Builder()
+				.setMemoizationDeactivated(store.getBoolean(Preferences.DEACTIVATE_MEMOIZATION))
+				.setNeighbourhoodReductionDeactivated(
+						store.getBoolean(Preferences.DEACTIVATE_NEIGHBOURHOOD_REDUCTION))
+				.setEvaluationCacheCapacity(store.getInt(Preferences.EVALUATION_CACHE_CAPACITY))
+				.setEvaluationStorePath(store.getString(Preferences.EVALUATION_STORE_PATH))
+				.setGainBuckets(store.getBoolean(Preferences.GAIN_BUCKETS))
+				.setCandidateClasses(store.getInt(Preferences.CANDIDATE_CLASSES))
+				.setPreoptimize(store.getBoolean(Preferences.P_DO_PREOPTIMIZE))
+				.setImproveSolutions(store.getBoolean(Preferences.P_IMPROVE_SOLUTIONS))
+				.setUseForSystem(HeuristicFactory.HILL_CLIMBING_STEEPEST,
+						store.getBoolean(Preferences.P_USE4SYS_HILL_CLIMBING_STEEPEST))
+				.setUseForSystem(HeuristicFactory.HILL_CLIMBING_FIRST_CHOICE,
+						store.getBoolean(Preferences.P_USE4SYS_HILL_CLIMBING_FIRST_CHOICE))
+				.setUseForSystem(HeuristicFactory.TABU_SEARCH,
+						store.getBoolean(Preferences.P_USE4SYS_TABU_SEARCH))
+				.setUseForSystem(HeuristicFactory.TABU_SEARCH_DYNAMIC,
+						store.getBoolean(Preferences.P_USE4SYS_TABU_SEARCH_DYNAMIC))
+				.setUseForSystem(HeuristicFactory.SIMULATED_ANNEALING,
+						store.getBoolean(Preferences.P_USE4SYS_SIMULATED_ANNEALING))
+				.setParallelPortfolio(store.getBoolean(Preferences.P_PARALLEL_PORTFOLIO))
+				.setStopAtTarget(store.getBoolean(Preferences.P_STOP_AT_TARGET))
+				.setTargetFitness(store.getDouble(Preferences.P_TARGET_FITNESS))
+				.setTimeLimited(store.getBoolean(Preferences.P_SEARCH_LIMIT_TIME))
+				.setMaxRunningTime(store.getInt(Preferences.P_SEARCH_MAX_RUNNING_TIME))
+				.setLogResults(store.getBoolean(Preferences.P_LOG_RESULTS))
+				.setLogPath(store.getString(Preferences.P_LOG_PATH))
+				.setLogResultsFile(store.getString(Preferences.P_LOG_RESULTS_FILE)).build();
+	}
 }
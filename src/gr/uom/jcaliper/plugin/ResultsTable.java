@@ -3,14 +3,27 @@ package gr.uom.jcaliper.plugin;
 import gr.uom.java.ast.CompilationUnitCache;
 import gr.uom.jcaliper.executor.ExecutionManager;
 import gr.uom.jcaliper.executor.ExecutionSummary;
+import gr.uom.jcaliper.executor.IResultsViewer;
+import gr.uom.jcaliper.preferences.RunConfiguration;
 import gr.uom.jcaliper.heuristics.SearchAlgorithm;
 import gr.uom.jcaliper.system.CratSystem;
 import gr.uom.jcaliper.system.CratSystemCreator;
+import gr.uom.jcaliper.system.CratSystemSnapshot;
+import gr.uom.jcaliper.system.EntitySet;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
@@ -38,6 +51,7 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
@@ -54,7 +68,7 @@ import org.eclipse.ui.part.ViewPart;
 /**
  * @author Panagiotis Kouros
  */
-public class ResultsTable extends ViewPart {
+public class ResultsTable extends ViewPart implements IResultsViewer {
 
 	/**
 	 * The ID of the view as specified by the extension.
@@ -67,6 +81,7 @@ public class ResultsTable extends ViewPart {
 	private Action doubleClickAction;
 	private Action terminate;
 	private Action printTimes;
+	private Action exportModel;
 	private ExecutionManager executionManager = ExecutionManager.getInstance();
 
 	private IStructuredSelection currentSelection = null;
@@ -324,9 +339,10 @@ public class ResultsTable extends ViewPart {
 	public ResultsTable() {
 	}
 
+	@Override
 	public void updateViewer() {
 		try {
-			executionManager.setResultsTable(this);
+			executionManager.setResultsViewer(this);
 			setInput(executionManager.getResults());
 			viewer.refresh();// viewer.getTable().redraw();
 			// Unfortunately the obvious code of above line seems not working,
@@ -368,6 +384,7 @@ public class ResultsTable extends ViewPart {
 		manager.add(new Separator());
 		manager.add(showRefactoring);
 		manager.add(printTimes);
+		manager.add(exportModel);
 	}
 
 	private void fillContextMenu(IMenuManager manager) {
@@ -375,6 +392,7 @@ public class ResultsTable extends ViewPart {
 		manager.add(terminate);
 		manager.add(showRefactoring);
 		manager.add(printTimes);
+		manager.add(exportModel);
 		// Other plug-ins can contribute there actions here
 		manager.add(new Separator(IWorkbenchActionConstants.MB_ADDITIONS));
 	}
@@ -393,6 +411,8 @@ public class ResultsTable extends ViewPart {
 			public void run() {
 				if (currentSelection == null)
 					return;
+				// the core reads its settings from the run configuration
+				RunConfiguration.setCurrent(Activator.getDefault().createRunConfiguration());
 				ExecutionManager exec = ExecutionManager.getInstance();
 				exec.clearResults();
 				Iterator<?> iterator = currentSelection.iterator();
@@ -406,11 +426,7 @@ public class ResultsTable extends ViewPart {
 						selectedProject = selectedPackage.getJavaProject();
 					}
 					if ((selectedProject != null) || (selectedPackage != null)) {
-						CompilationUnitCache.getInstance().clearCache();
-						CratSystemCreator creator = new CratSystemCreator(selectedProject,
-								selectedPackage);
-						CratSystem system = creator.getCratSystem();
-						CompilationUnitCache.getInstance().clearCache();
+						CratSystem system = getCratSystem();
 						// tableViewer.setContentProvider(new ViewContentProvider());
 						exec = ExecutionManager.getInstance(system);
 						exec.runHeuristics();
@@ -468,6 +484,34 @@ public class ResultsTable extends ViewPart {
 		runHeuristics.setEnabled(false);
 		showRefactoring.setEnabled(true);
 
+		exportModel = new Action() {
+			@Override
+			public void run() {
+				if ((selectedProject == null) && (selectedPackage == null))
+					return;
+				FileDialog dialog = new FileDialog(viewer.getControl().getShell(), SWT.SAVE);
+				dialog.setText("Export system model");
+				dialog.setFilterExtensions(new String[] { "*.crat" });
+				String name = (selectedPackage != null) ? selectedPackage.getElementName()
+						: selectedProject.getElementName();
+				dialog.setFileName(name + ".crat");
+				String path = dialog.open();
+				if (path == null)
+					return;
+				CratSystem system = getCratSystem();
+				try {
+					system.writeTo(new File(path));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		exportModel.setEnabled(false);
+		exportModel.setText("Export model");
+		exportModel.setToolTipText("Save the system model for the command line runner");
+		exportModel.setImageDescriptor(PlatformUI.getWorkbench().getSharedImages()
+				.getImageDescriptor(ISharedImages.IMG_ETOOL_SAVE_EDIT));
+
 		printTimes = new Action() {
 			@Override
 			public void run() {
@@ -476,6 +520,72 @@ public class ResultsTable extends ViewPart {
 		};
 	}
 
+	/**
+	 * Analyzes the selected project or package. The analyzed system is kept as a snapshot in
+	 * the plugin state location, with a fingerprint of the sources, and reused while the
+	 * sources have the same fingerprint.
+	 */
+	private CratSystem getCratSystem() {
+		IResource resource = (selectedPackage != null) ? selectedPackage.getResource()
+				: selectedProject.getResource();
+		String name = selectedProject.getElementName();
+		if (selectedPackage != null)
+			name += "-" + selectedPackage.getElementName();
+		File snapshot = Activator.getDefault().getStateLocation().append(name + ".crat")
+				.toFile();
+		Long sources = (resource != null) ? sourceFingerprint(resource) : null;
+		if ((sources != null) && snapshot.exists())
+			try {
+				if (CratSystem.readSourceFingerprint(snapshot) == sources)
+					return CratSystem.readFrom(snapshot);
+			} catch (IOException e) {
+				e.printStackTrace(); // analyze again
+			}
+		CompilationUnitCache.getInstance().clearCache();
+		CratSystemCreator creator = new CratSystemCreator(selectedProject, selectedPackage);
+		CratSystem system = creator.getCratSystem();
+		CompilationUnitCache.getInstance().clearCache();
+		try {
+			system.writeTo(snapshot, (sources != null) ? sources : CratSystemSnapshot.NO_SOURCES);
+		} catch (IOException e) {
+			e.printStackTrace();
+			snapshot.delete();
+		}
+		return system;
+	}
+
+	/**
+	 * A deleted file changes the set of paths; an edit not saved yet is analyzed from its editor,
+	 * so its source is taken instead of the time stamp of its file.
+	 * 
+	 * @return a fingerprint of the paths and local time stamps of the files of the resource
+	 *         (null if unknown: do not reuse the snapshot)
+	 */
+	private Long sourceFingerprint(IResource resource) {
+		final TreeMap<String, Long> stamps = new TreeMap<String, Long>();
+		try {
+			resource.accept(new IResourceVisitor() {
+				@Override
+				public boolean visit(IResource member) {
+					if (member.getType() == IResource.FILE)
+						stamps.put(member.getFullPath().toString(), member.getLocalTimeStamp());
+					return true;
+				}
+			});
+			for (ICompilationUnit unit : JavaCore.getWorkingCopies(null))
+				if (resource.getFullPath().isPrefixOf(unit.getPath()) && unit.hasUnsavedChanges())
+					stamps.put(unit.getPath().toString(), (long) unit.getSource().hashCode());
+		} catch (CoreException e) {
+			return null;
+		}
+		long fingerprint = EntitySet.mix64(stamps.size() + 1);
+		for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+			fingerprint = EntitySet.mix64(fingerprint + stamp.getKey().hashCode());
+			fingerprint = EntitySet.mix64(fingerprint + stamp.getValue());
+		}
+		return fingerprint;
+	}
+
 	private void hookDoubleClickAction() {
 		viewer.addDoubleClickListener(new IDoubleClickListener() {
 			@Override
@@ -544,6 +654,7 @@ public class ResultsTable extends ViewPart {
 				if ((javaProject != null) && !javaProject.equals(selectedProject))
 					selectedProject = javaProject;
 				runHeuristics.setEnabled(true);
+				exportModel.setEnabled(true);
 			}
 		}
 	};
@@ -23,15 +23,23 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 				store.getDefaultString(Preferences.P_LOG_PATH) + "\\CRAT_results.log");
 
 		store.setDefault(Preferences.P_DO_PREOPTIMIZE, false);
+		store.setDefault(Preferences.P_IMPROVE_SOLUTIONS, false);
 		
 		store.setDefault(Preferences.DEACTIVATE_MEMOIZATION, false);
 		store.setDefault(Preferences.DEACTIVATE_NEIGHBOURHOOD_REDUCTION, false);
+		store.setDefault(Preferences.EVALUATION_CACHE_CAPACITY, 0);
+		store.setDefault(Preferences.EVALUATION_STORE_PATH, "");
+		store.setDefault(Preferences.GAIN_BUCKETS, false);
+		store.setDefault(Preferences.CANDIDATE_CLASSES, 0);
 		
 		store.setDefault(Preferences.P_USE4SYS_HILL_CLIMBING_STEEPEST, false);
 		store.setDefault(Preferences.P_USE4SYS_HILL_CLIMBING_FIRST_CHOICE, false);
 		store.setDefault(Preferences.P_USE4SYS_TABU_SEARCH, true);
 		store.setDefault(Preferences.P_USE4SYS_TABU_SEARCH_DYNAMIC, true);
 		store.setDefault(Preferences.P_USE4SYS_SIMULATED_ANNEALING,false);
+		store.setDefault(Preferences.P_PARALLEL_PORTFOLIO, false);
+		store.setDefault(Preferences.P_STOP_AT_TARGET, false);
+		store.setDefault(Preferences.P_TARGET_FITNESS, 0.0);
 
 		store.setDefault(Preferences.P_SEARCH_LIMIT_TIME, false);
 		store.setDefault(Preferences.P_HC_MAX_CLIMBING_TIMES, 10);
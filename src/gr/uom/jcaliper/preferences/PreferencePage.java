@@ -8,7 +8,9 @@ import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
 import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -22,12 +24,20 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 	private BooleanFieldEditor useForSysHCTabuSearchEditor;
 	private BooleanFieldEditor useForSysHCTabuSearchDynEditor;
 	private BooleanFieldEditor useForSysHCSimAnnealingEditor;
+	private BooleanFieldEditor parallelPortfolioEditor;
+	private BooleanFieldEditor stopAtTargetEditor;
+	private DoubleFieldEditor targetFitnessEditor;
 	private BooleanFieldEditor doPreoptimizeEditor;
+	private BooleanFieldEditor improveSolutionsEditor;
 	private BooleanFieldEditor logResultsEditor;
 	private DirectoryFieldEditor logPathEditor;
 	private FileFieldEditor logResultsFileEditor;
 	private BooleanFieldEditor limitTimeEditor;
 	private IntegerFieldEditor maxRunningTimeEditor;
+	private IntegerFieldEditor cacheCapacityEditor;
+	private DirectoryFieldEditor evaluationStoreEditor;
+	private BooleanFieldEditor gainBucketsEditor;
+	private IntegerFieldEditor candidateClassesEditor;
 
 	public PreferencePage() {
 		super(GRID);
@@ -68,10 +78,28 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 				getFieldEditorParent());
 		addField(useForSysHCSimAnnealingEditor);
 
+		parallelPortfolioEditor = new BooleanFieldEditor(Preferences.P_PARALLEL_PORTFOLIO,
+				"&Run the algorithms in parallel", getFieldEditorParent());
+		addField(parallelPortfolioEditor);
+
+		stopAtTargetEditor = new BooleanFieldEditor(Preferences.P_STOP_AT_TARGET,
+				"&Stop all when one reaches the target fitness", getFieldEditorParent());
+		addField(stopAtTargetEditor);
+
+		targetFitnessEditor = new DoubleFieldEditor(Preferences.P_TARGET_FITNESS,
+				"Tar&get fitness:", getFieldEditorParent());
+		targetFitnessEditor.setEmptyStringAllowed(false);
+		targetFitnessEditor.setErrorMessage("Target fitness must be a number");
+		addField(targetFitnessEditor);
+
 		doPreoptimizeEditor = new BooleanFieldEditor(Preferences.P_DO_PREOPTIMIZE,
 				"&Pre-optimize at class/package level", getFieldEditorParent());
 		addField(doPreoptimizeEditor);
 
+		improveSolutionsEditor = new BooleanFieldEditor(Preferences.P_IMPROVE_SOLUTIONS,
+				"&Improve the optima of TS, TSD and SA by hill climbing", getFieldEditorParent());
+		addField(improveSolutionsEditor);
+
 		logResultsEditor = new BooleanFieldEditor(Preferences.P_LOG_RESULTS,
 				"&Log searching moves and results", getFieldEditorParent());
 		addField(logResultsEditor);
@@ -98,6 +126,25 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 		maxRunningTimeEditor.setEmptyStringAllowed(false);
 		addField(maxRunningTimeEditor);
 
+		cacheCapacityEditor = new IntegerFieldEditor(Preferences.EVALUATION_CACHE_CAPACITY,
+				"Max &cached evaluations (0 = unlimited)", getFieldEditorParent());
+		cacheCapacityEditor.setEmptyStringAllowed(false);
+		addField(cacheCapacityEditor);
+
+		evaluationStoreEditor = new DirectoryFieldEditor(Preferences.EVALUATION_STORE_PATH,
+				"Keep evaluations across runs in (empty = no):", getFieldEditorParent());
+		evaluationStoreEditor.setEmptyStringAllowed(true);
+		addField(evaluationStoreEditor);
+
+		gainBucketsEditor = new BooleanFieldEditor(Preferences.GAIN_BUCKETS,
+				"Order the moves by gain &buckets", getFieldEditorParent());
+		addField(gainBucketsEditor);
+
+		candidateClassesEditor = new IntegerFieldEditor(Preferences.CANDIDATE_CLASSES,
+				"Ca&ndidate target classes per entity (0 = all)", getFieldEditorParent());
+		candidateClassesEditor.setEmptyStringAllowed(false);
+		addField(candidateClassesEditor);
+
 		updateDependentFields();
 	}
 
@@ -105,7 +152,9 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 	public void propertyChange(PropertyChangeEvent event) {
 		super.propertyChange(event);
 		if (event.getProperty().equals(FieldEditor.VALUE)
-				&& ((event.getSource() == logResultsEditor) || (event.getSource() == limitTimeEditor)))
+				&& ((event.getSource() == logResultsEditor) || (event.getSource() == limitTimeEditor)
+						|| (event.getSource() == parallelPortfolioEditor)
+						|| (event.getSource() == stopAtTargetEditor)))
 			updateDependentFields();
 	}
 
@@ -113,6 +162,10 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 		logPathEditor.setEnabled(logResultsEditor.getBooleanValue(), getFieldEditorParent());
 		logResultsFileEditor.setEnabled(logResultsEditor.getBooleanValue(), getFieldEditorParent());
 		maxRunningTimeEditor.setEnabled(limitTimeEditor.getBooleanValue(), getFieldEditorParent());
+		stopAtTargetEditor.setEnabled(parallelPortfolioEditor.getBooleanValue(),
+				getFieldEditorParent());
+		targetFitnessEditor.setEnabled(parallelPortfolioEditor.getBooleanValue()
+				&& stopAtTargetEditor.getBooleanValue(), getFieldEditorParent());
 	}
 
 	/*
@@ -123,4 +176,25 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 	public void init(IWorkbench workbench) {
 	}
 
+	/**
+	 * Text editor of a real number preference. The preference is read with getDouble, which
+	 * would take any other text as 0.0.
+	 */
+	private static class DoubleFieldEditor extends StringFieldEditor {
+
+		DoubleFieldEditor(String name, String labelText, Composite parent) {
+			super(name, labelText, parent);
+		}
+
+		@Override
+		protected boolean doCheckState() {
+			try {
+				double value = Double.parseDouble(getStringValue());
+				return !Double.isNaN(value) && !Double.isInfinite(value);
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+	}
+
 }
\ No newline at end of file
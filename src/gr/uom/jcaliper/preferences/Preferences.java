@@ -44,17 +44,32 @@ public class Preferences {
 	
 	public static final String DEACTIVATE_MEMOIZATION = "DEACTIVATE_MEMOIZATION";
 	public static final String DEACTIVATE_NEIGHBOURHOOD_REDUCTION = "DEACTIVATE_NEIGHBOURHOOD_REDUCTION";
+	// Max number of memoized class evaluations (0 = unlimited)
+	public static final String EVALUATION_CACHE_CAPACITY = "EVALUATION_CACHE_CAPACITY";
+	// Directory keeping class evaluations across runs (empty = none)
+	public static final String EVALUATION_STORE_PATH = "EVALUATION_STORE_PATH";
+	// Order the moves by gain buckets instead of a treap
+	public static final String GAIN_BUCKETS = "GAIN_BUCKETS";
+	// Target classes kept per movable entity, by affinity (0 = all)
+	public static final String CANDIDATE_CLASSES = "CANDIDATE_CLASSES";
 
 	public static final String P_LOG_RESULTS = "logResultsPreference";
 	public static final String P_LOG_PATH = "logPathPreference";
 	public static final String P_LOG_RESULTS_FILE = "logResultsFilePreference";
 
 	public static final String P_DO_PREOPTIMIZE = "doPreoptimizePreference";
+	// Climb from the optima of tabu search and simulated annealing with both hill climbers
+	public static final String P_IMPROVE_SOLUTIONS = "improveSolutionsPreference";
 	public static final String P_USE4SYS_HILL_CLIMBING_STEEPEST = "useForSysHillClimbingSteepest";
 	public static final String P_USE4SYS_HILL_CLIMBING_FIRST_CHOICE = "useForSysHillClimbingFirstChoice";
 	public static final String P_USE4SYS_TABU_SEARCH = "useForSysTabuSearch";
 	public static final String P_USE4SYS_TABU_SEARCH_DYNAMIC = "useForSysTabuSearchDynamic";
 	public static final String P_USE4SYS_SIMULATED_ANNEALING = "useForSysSimulatedAnnealing";
+	// Run the system algorithms in parallel, each on its own explorer
+	public static final String P_PARALLEL_PORTFOLIO = "parallelPortfolioPreference";
+	// Stop all parallel algorithms when one of them reaches the target fitness
+	public static final String P_STOP_AT_TARGET = "stopAtTargetPreference";
+	public static final String P_TARGET_FITNESS = "targetFitnessPreference";
 
 	public static final String P_HC_MAX_CLIMBING_TIMES = "HC_MaximumClimbingTimes";
 	public static final String P_SEARCH_LIMIT_TIME = "Search_LimitTime";
@@ -0,0 +1,298 @@
+package gr.uom.jcaliper.preferences;
+
+import gr.uom.jcaliper.heuristics.HeuristicFactory;
+
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable settings of an optimization run
+ * <p>
+ * The core (metrics, heuristics, executor) reads its settings from the current run
+ * configuration, never from the workbench. The plug-in creates one from its preference store
+ * before each run; the command line runner creates one from its arguments. Each object reads
+ * the current configuration once, when it is created.
+ *
+ * @author Panagiotis Kouros
+ */
+public final class RunConfiguration {
+
+	private static volatile RunConfiguration current = new Builder().build();
+
+	private final boolean memoizationDeactivated;
+	private final boolean neighbourhoodReductionDeactivated;
+	private final int evaluationCacheCapacity;
+	private final String evaluationStorePath;
+	private final boolean gainBuckets;
+	private final int candidateClasses;
+	private final boolean preoptimize;
+	private final boolean improveSolutions;
+	private final SortedSet<Integer> algorithmsForSystem;
+	private final boolean parallelPortfolio;
+	private final boolean stopAtTarget;
+	private final double targetFitness;
+	private final boolean timeLimited;
+	private final int maxRunningTime;
+	private final boolean logResults;
+	private final String logPath;
+	private final String logResultsFile;
+
+	// Constructors
+
+	private RunConfiguration(Builder builder) {
+		memoizationDeactivated = builder.memoizationDeactivated;
+		neighbourhoodReductionDeactivated = builder.neighbourhoodReductionDeactivated;
+		evaluationCacheCapacity = builder.evaluationCacheCapacity;
+		evaluationStorePath = builder.evaluationStorePath;
+		gainBuckets = builder.gainBuckets;
+		candidateClasses = builder.candidateClasses;
+		preoptimize = builder.preoptimize;
+		improveSolutions = builder.improveSolutions;
+		algorithmsForSystem = Collections.unmodifiableSortedSet(new TreeSet<Integer>(
+				builder.algorithmsForSystem));
+		parallelPortfolio = builder.parallelPortfolio;
+		stopAtTarget = builder.stopAtTarget;
+		targetFitness = builder.targetFitness;
+		timeLimited = builder.timeLimited;
+		maxRunningTime = builder.maxRunningTime;
+		logResults = builder.logResults;
+		logPath = builder.logPath;
+		logResultsFile = builder.logResultsFile;
+	}
+
+	// Current configuration
+
+	/**
+	 * @return the configuration of the next objects to be created (the defaults, if none was
+	 *         set)
+	 */
+	public static RunConfiguration getCurrent() {
+		return current;
+	}
+
+	public static void setCurrent(RunConfiguration configuration) {
+		current = configuration;
+	}
+
+	// Getters
+
+	public boolean isMemoizationDeactivated() {
+		return memoizationDeactivated;
+	}
+
+	public boolean isNeighbourhoodReductionDeactivated() {
+		return neighbourhoodReductionDeactivated;
+	}
+
+	/**
+	 * @return the max number of memoized class evaluations (0 = unlimited)
+	 */
+	public int getEvaluationCacheCapacity() {
+		return evaluationCacheCapacity;
+	}
+
+	/**
+	 * @return the directory keeping class evaluations across runs (empty = none)
+	 */
+	public String getEvaluationStorePath() {
+		return evaluationStorePath;
+	}
+
+	/**
+	 * @return true to order the moves of the navigators by gain buckets instead of a treap
+	 */
+	public boolean isGainBuckets() {
+		return gainBuckets;
+	}
+
+	/**
+	 * @return the initial number of target classes kept per movable entity, by affinity (0 =
+	 *         all)
+	 */
+	public int getCandidateClasses() {
+		return candidateClasses;
+	}
+
+	public boolean isPreoptimize() {
+		return preoptimize;
+	}
+
+	/**
+	 * @return true to climb from the optima of tabu search and simulated annealing with both
+	 *         hill climbers
+	 */
+	public boolean isImproveSolutions() {
+		return improveSolutions;
+	}
+
+	/**
+	 * @return the IDs (see HeuristicFactory) of the algorithms to apply on the system
+	 */
+	public SortedSet<Integer> getAlgorithmsForSystem() {
+		return algorithmsForSystem;
+	}
+
+	public boolean isParallelPortfolio() {
+		return parallelPortfolio;
+	}
+
+	public boolean isStopAtTarget() {
+		return stopAtTarget;
+	}
+
+	public double getTargetFitness() {
+		return targetFitness;
+	}
+
+	public boolean isTimeLimited() {
+		return timeLimited;
+	}
+
+	/**
+	 * @return the max running time per algorithm, in seconds
+	 */
+	public int getMaxRunningTime() {
+		return maxRunningTime;
+	}
+
+	public boolean isLogResults() {
+		return logResults;
+	}
+
+	public String getLogPath() {
+		return logPath;
+	}
+
+	public String getLogResultsFile() {
+		return logResultsFile;
+	}
+
+	/**
+	 * Creates run configurations. Its initial values are the defaults of the plug-in
+	 * preferences, except that results are not logged.
+	 */
+	public static class Builder {
+
+		private boolean memoizationDeactivated = false;
+		private boolean neighbourhoodReductionDeactivated = false;
+		private int evaluationCacheCapacity = 0;
+		private String evaluationStorePath = "";
+		private boolean gainBuckets = false;
+		private int candidateClasses = 0;
+		private boolean preoptimize = false;
+		private boolean improveSolutions = false;
+		private TreeSet<Integer> algorithmsForSystem = new TreeSet<Integer>();
+		private boolean parallelPortfolio = false;
+		private boolean stopAtTarget = false;
+		private double targetFitness = 0.0;
+		private boolean timeLimited = false;
+		private int maxRunningTime = 600;
+		private boolean logResults = false;
+		private String logPath = System.getProperty("user.home");
+		private String logResultsFile = logPath + System.getProperty("file.separator")
+				+ "CRAT_results.log";
+
+		public Builder() {
+			algorithmsForSystem.add(HeuristicFactory.TABU_SEARCH);
+			algorithmsForSystem.add(HeuristicFactory.TABU_SEARCH_DYNAMIC);
+		}
+
+		public Builder setMemoizationDeactivated(boolean memoizationDeactivated) {
+			this.memoizationDeactivated = memoizationDeactivated;
+			return this;
+		}
+
+		public Builder setNeighbourhoodReductionDeactivated(
+				boolean neighbourhoodReductionDeactivated) {
+			this.neighbourhoodReductionDeactivated = neighbourhoodReductionDeactivated;
+			return this;
+		}
+
+		public Builder setEvaluationCacheCapacity(int evaluationCacheCapacity) {
+			this.evaluationCacheCapacity = evaluationCacheCapacity;
+			return this;
+		}
+
+		public Builder setEvaluationStorePath(String evaluationStorePath) {
+			this.evaluationStorePath = (evaluationStorePath != null) ? evaluationStorePath : "";
+			return this;
+		}
+
+		public Builder setGainBuckets(boolean gainBuckets) {
+			this.gainBuckets = gainBuckets;
+			return this;
+		}
+
+		public Builder setCandidateClasses(int candidateClasses) {
+			this.candidateClasses = Math.max(candidateClasses, 0);
+			return this;
+		}
+
+		public Builder setPreoptimize(boolean preoptimize) {
+			this.preoptimize = preoptimize;
+			return this;
+		}
+
+		public Builder setImproveSolutions(boolean improveSolutions) {
+			this.improveSolutions = improveSolutions;
+			return this;
+		}
+
+		/**
+		 * Adds or removes an algorithm (see HeuristicFactory) to apply on the system
+		 */
+		public Builder setUseForSystem(int algorithmId, boolean use) {
+			if (use)
+				algorithmsForSystem.add(algorithmId);
+			else
+				algorithmsForSystem.remove(algorithmId);
+			return this;
+		}
+
+		public Builder setParallelPortfolio(boolean parallelPortfolio) {
+			this.parallelPortfolio = parallelPortfolio;
+			return this;
+		}
+
+		public Builder setStopAtTarget(boolean stopAtTarget) {
+			this.stopAtTarget = stopAtTarget;
+			return this;
+		}
+
+		public Builder setTargetFitness(double targetFitness) {
+			this.targetFitness = targetFitness;
+			return this;
+		}
+
+		public Builder setTimeLimited(boolean timeLimited) {
+			this.timeLimited = timeLimited;
+			return this;
+		}
+
+		public Builder setMaxRunningTime(int maxRunningTime) {
+			this.maxRunningTime = maxRunningTime;
+			return this;
+		}
+
+		public Builder setLogResults(boolean logResults) {
+			this.logResults = logResults;
+			return this;
+		}
+
+		public Builder setLogPath(String logPath) {
+			this.logPath = logPath;
+			return this;
+		}
+
+		public Builder setLogResultsFile(String logResultsFile) {
+			this.logResultsFile = logResultsFile;
+			return this;
+		}
+
+		public RunConfiguration build() {
+			return new RunConfiguration(this);
+		}
+	}
+
+}
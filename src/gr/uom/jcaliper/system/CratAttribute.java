@@ -57,4 +57,6 @@ public class CratAttribute extends CratEntity {
 		similarityToOriginClass = 5 + (10 * similarity);
 	}
 
+	private static final long serialVersionUID = 1L;
+
 }
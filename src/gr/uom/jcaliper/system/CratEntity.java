@@ -1,9 +1,11 @@
 package gr.uom.jcaliper.system;
 
+import java.io.Serializable;
+
 /**
  * @author Panagiotis Kouros
  */
-public abstract class CratEntity {
+public abstract class CratEntity implements Serializable {
 
 	protected int id;
 	protected String name;
@@ -291,4 +293,6 @@ public abstract class CratEntity {
 	// protected static final int ENTITY_IS_COLLECTION_ADDER = 1 << 6;
 	// protected static final int ENTITY_IS_DELEGATE = 1 << 7;
 
+	private static final long serialVersionUID = 1L;
+
 }
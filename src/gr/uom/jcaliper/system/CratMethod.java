@@ -98,4 +98,6 @@ public class CratMethod extends CratEntity {
 		setCallsSuperclassMethod(callFound);
 	}
 
+	private static final long serialVersionUID = 1L;
+
 }
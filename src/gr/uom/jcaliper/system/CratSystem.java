@@ -1,5 +1,11 @@
 package gr.uom.jcaliper.system;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.TreeMap;
@@ -7,7 +13,7 @@ import java.util.TreeMap;
 /**
  * @author Panagiotis Kouros
  */
-public class CratSystem implements IEntityPool {
+public class CratSystem implements IEntityPool, Serializable {
 
 	private String name;
 	private int systemType;
@@ -89,6 +95,20 @@ public class CratSystem implements IEntityPool {
 		initializeBoxedStructures();
 	}
 
+	/**
+	 * Sets the data structures that updateDataStructures would create, for a system loaded from a
+	 * snapshot
+	 */
+	void setUpdatedStructures(EntitySet systemEntities, TreeMap<Integer, CratClass> boxedClasses,
+			TreeMap<Integer, CratEntity> boxedEntities, EntitySet boxedSystemEntities) {
+		for (CratPackage pkg : packages.values())
+			pkg.setSystem(this);
+		this.systemEntities = systemEntities;
+		this.boxedClasses = boxedClasses;
+		this.boxedEntities = boxedEntities;
+		this.boxedSystemEntities = boxedSystemEntities;
+	}
+
 	private void reupdateForbiddenClassmates() {
 		EntitySet nonTargetElements = new EntitySet();
 		for (SystemClass sysCl : classes.values())
@@ -412,6 +432,71 @@ public class CratSystem implements IEntityPool {
 		return packages;
 	}
 
+	// Serialization
+
+	/**
+	 * Saves the system model (with its updated data structures) as a binary snapshot, so that
+	 * it can be optimized later without the workbench and without analyzing the project again
+	 * 
+	 * @param file
+	 *            the model file
+	 * @throws IOException
+	 * @see CratSystemSnapshot
+	 */
+	public void writeTo(File file) throws IOException {
+		CratSystemSnapshot.write(this, file, CratSystemSnapshot.NO_SOURCES);
+	}
+
+	/**
+	 * Saves the system model, with a fingerprint of the sources it was analyzed from
+	 * 
+	 * @param file
+	 *            the model file
+	 * @param sourceFingerprint
+	 *            identifies the analyzed sources, see readSourceFingerprint
+	 * @throws IOException
+	 */
+	public void writeTo(File file, long sourceFingerprint) throws IOException {
+		CratSystemSnapshot.write(this, file, sourceFingerprint);
+	}
+
+	/**
+	 * @param file
+	 *            a model file saved by writeTo
+	 * @return the fingerprint of the sources the model was analyzed from (NO_SOURCES if
+	 *         unknown)
+	 * @throws IOException
+	 *             if the file cannot be read or is not a snapshot of this version
+	 */
+	public static long readSourceFingerprint(File file) throws IOException {
+		return CratSystemSnapshot.readSourceFingerprint(file);
+	}
+
+	/**
+	 * Loads a system model saved by writeTo (or a serialized model of older versions)
+	 * 
+	 * @param file
+	 *            the model file
+	 * @return the system
+	 * @throws IOException
+	 *             if the file cannot be read or is not a system model
+	 */
+	public static CratSystem readFrom(File file) throws IOException {
+		if (CratSystemSnapshot.isSnapshot(file))
+			return CratSystemSnapshot.read(file);
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			return (CratSystem) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Not a system model: " + file, e);
+		} catch (ClassCastException e) {
+			throw new IOException("Not a system model: " + file, e);
+		} finally {
+			in.close();
+		}
+	}
+
 	private String systemTypeName() {
 		if (systemType == SYSTEM_PROJECT)
 			return "project ";
@@ -424,4 +509,6 @@ public class CratSystem implements IEntityPool {
 	public static final int SYSTEM_PROJECT = 0;
 	public static final int SYSTEM_PACKAGE = 1;
 
+	private static final long serialVersionUID = 1L;
+
 }
@@ -0,0 +1,521 @@
+package gr.uom.jcaliper.system;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * Binary snapshot of an analyzed CratSystem
+ * <p>
+ * The snapshot keeps the finished system (packages, classes, entity sets, relatives, forbidden
+ * classmates, boxes and flags), so that it can be loaded again without the workbench and
+ * without parsing the project. Every section is an int array, a double array, or a list of int
+ * rows in CSR form (row offsets followed by the concatenated rows); the strings are CSR rows of
+ * UTF-8 bytes. The file is read at once into a buffer and the arrays are copied from it in bulk.
+ * The file is not memory-mapped, so it can be replaced as soon as it is loaded.
+ *
+ * <pre>
+ * header     MAGIC, VERSION, source fingerprint, systemType, name
+ * packages   ids, names, classes
+ * classes    ids, names, javaPaths, properties, targets, package, superclass, external,
+ *            members, superclasses, subclasses, internals, containers, boxed members
+ * entities   ids, kinds, names, origin classes, origin boxes, properties, movable,
+ *            similarities, boxes, entity sets, relatives, forbidden classmates
+ * boxed      entity sets, relatives, forbidden classmates (same entities and order)
+ * active     system entities, boxed system entities
+ * </pre>
+ *
+ * A missing class reference is stored as NONE. The source fingerprint identifies the sources
+ * the system was analyzed from (NO_SOURCES if unknown), so that a stale snapshot can be told
+ * without reading it.
+ *
+ * @author Panagiotis Kouros
+ */
+public class CratSystemSnapshot {
+
+	// Writing
+
+	/**
+	 * Saves a system with updated data structures
+	 *
+	 * @param system
+	 *            the system
+	 * @param file
+	 *            the snapshot file
+	 * @param sourceFingerprint
+	 *            identifies the sources the system was analyzed from (or NO_SOURCES)
+	 * @throws IOException
+	 */
+	public static void write(CratSystem system, File file, long sourceFingerprint)
+			throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceFingerprint);
+			out.writeInt(system.getSystemType());
+			writeStrings(out, new String[] { system.getName() });
+			writePackages(out, system.getPackages().values());
+			writeClasses(out, system);
+			writeEntities(out, system.getEntities().values());
+			writeBoxedEntities(out, system);
+			ArrayList<EntitySet> active = new ArrayList<EntitySet>();
+			active.add(system.getEntitySet());
+			active.add(system.getBoxedEntitySet());
+			writeSets(out, active);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writePackages(DataOutputStream out, Collection<CratPackage> packages)
+			throws IOException {
+		int n = packages.size();
+		int[] ids = new int[n];
+		String[] names = new String[n];
+		ArrayList<EntitySet> members = new ArrayList<EntitySet>(n);
+		int i = 0;
+		for (CratPackage pkg : packages) {
+			ids[i] = pkg.getId();
+			names[i] = pkg.getName();
+			members.add(new EntitySet(pkg.keySet()));
+			i++;
+		}
+		writeInts(out, ids);
+		writeStrings(out, names);
+		writeSets(out, members);
+	}
+
+	private static void writeClasses(DataOutputStream out, CratSystem system) throws IOException {
+		Collection<SystemClass> classes = system.getClasses().values();
+		int n = classes.size();
+		int[] ids = new int[n];
+		String[] names = new String[n];
+		String[] javaPaths = new String[n];
+		int[] properties = new int[n];
+		int[] targets = new int[n];
+		int[] packageIds = new int[n];
+		int[] superclassIds = new int[n];
+		int[] externalIds = new int[n];
+		ArrayList<EntitySet> members = new ArrayList<EntitySet>(n);
+		ArrayList<EntitySet> superclasses = new ArrayList<EntitySet>(n);
+		ArrayList<EntitySet> subclasses = new ArrayList<EntitySet>(n);
+		ArrayList<EntitySet> internals = new ArrayList<EntitySet>(n);
+		ArrayList<EntitySet> containers = new ArrayList<EntitySet>(n);
+		ArrayList<EntitySet> boxedMembers = new ArrayList<EntitySet>(n);
+		int i = 0;
+		for (SystemClass cl : classes) {
+			ids[i] = cl.id;
+			names[i] = cl.name;
+			javaPaths[i] = cl.javaPath;
+			properties[i] = cl.properties;
+			targets[i] = cl.isTarget ? 1 : 0;
+			packageIds[i] = (cl.mypackage != null) ? cl.mypackage.getId() : NONE;
+			superclassIds[i] = (cl.superclass != null) ? cl.superclass.id : NONE;
+			externalIds[i] = (cl.external != null) ? cl.external.id : NONE;
+			members.add(cl);
+			superclasses.add(classIds(cl.superclasses));
+			subclasses.add(classIds(cl.subclasses));
+			internals.add(classIds(cl.internals));
+			containers.add(classIds(cl.containers));
+			boxedMembers.add(system.getBoxedClasses().get(cl.id));
+			i++;
+		}
+		writeInts(out, ids);
+		writeStrings(out, names);
+		writeStrings(out, javaPaths);
+		writeInts(out, properties);
+		writeInts(out, targets);
+		writeInts(out, packageIds);
+		writeInts(out, superclassIds);
+		writeInts(out, externalIds);
+		writeSets(out, members);
+		writeSets(out, superclasses);
+		writeSets(out, subclasses);
+		writeSets(out, internals);
+		writeSets(out, containers);
+		writeSets(out, boxedMembers);
+	}
+
+	private static void writeEntities(DataOutputStream out, Collection<CratEntity> entities)
+			throws IOException {
+		int n = entities.size();
+		int[] ids = new int[n];
+		int[] kinds = new int[n];
+		String[] names = new String[n];
+		int[] originClasses = new int[n];
+		int[] originBoxes = new int[n];
+		int[] properties = new int[n];
+		int[] movable = new int[n];
+		double[] similarities = new double[n];
+		ArrayList<EntitySet> boxes = new ArrayList<EntitySet>(n);
+		int i = 0;
+		for (CratEntity entity : entities) {
+			ids[i] = entity.id;
+			kinds[i] = entity.isBox() ? KIND_BOX : (entity.isMethod() ? KIND_METHOD
+					: KIND_ATTRIBUTE);
+			names[i] = entity.name;
+			originClasses[i] = (entity.originClass != null) ? entity.originClass.id : NONE;
+			originBoxes[i] = entity.originBox;
+			properties[i] = entity.properties;
+			movable[i] = entity.movable ? 1 : 0;
+			similarities[i] = entity.similarityToOriginClass;
+			boxes.add(entity.box);
+			i++;
+		}
+		writeInts(out, ids);
+		writeInts(out, kinds);
+		writeStrings(out, names);
+		writeInts(out, originClasses);
+		writeInts(out, originBoxes);
+		writeInts(out, properties);
+		writeInts(out, movable);
+		writeDoubles(out, similarities);
+		writeSets(out, boxes);
+		writeEntitySets(out, entities);
+	}
+
+	private static void writeBoxedEntities(DataOutputStream out, CratSystem system)
+			throws IOException {
+		// the boxed entities are copies of the entities with boxed sets
+		if (!system.getBoxedEntities().keySet().equals(system.getEntities().keySet()))
+			throw new IOException("Boxed entities do not match the entities of the system");
+		writeEntitySets(out, system.getBoxedEntities().values());
+	}
+
+	private static void writeEntitySets(DataOutputStream out, Collection<CratEntity> entities)
+			throws IOException {
+		ArrayList<EntitySet> entitySets = new ArrayList<EntitySet>(entities.size());
+		ArrayList<EntitySet> relatives = new ArrayList<EntitySet>(entities.size());
+		ArrayList<EntitySet> forbidden = new ArrayList<EntitySet>(entities.size());
+		for (CratEntity entity : entities) {
+			entitySets.add(entity.entitySet);
+			relatives.add(entity.relatives);
+			forbidden.add(entity.forbiddenClassmates);
+		}
+		writeSets(out, entitySets);
+		writeSets(out, relatives);
+		writeSets(out, forbidden);
+	}
+
+	private static EntitySet classIds(Collection<SystemClass> classes) {
+		EntitySet ids = new EntitySet();
+		for (SystemClass cl : classes)
+			ids.add(cl.id);
+		return ids;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values)
+			out.writeInt(value);
+	}
+
+	private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+		out.writeInt(values.length);
+		for (double value : values)
+			out.writeDouble(value);
+	}
+
+	private static void writeSets(DataOutputStream out, ArrayList<EntitySet> rows)
+			throws IOException {
+		out.writeInt(rows.size());
+		int offset = 0;
+		out.writeInt(offset);
+		for (EntitySet row : rows) {
+			offset += row.size();
+			out.writeInt(offset);
+		}
+		for (EntitySet row : rows)
+			for (int id : row)
+				out.writeInt(id);
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] rows) throws IOException {
+		byte[][] bytes = new byte[rows.length][];
+		out.writeInt(rows.length);
+		int offset = 0;
+		out.writeInt(offset);
+		for (int i = 0; i < rows.length; i++) {
+			bytes[i] = rows[i].getBytes(UTF8);
+			offset += bytes[i].length;
+			out.writeInt(offset);
+		}
+		for (byte[] row : bytes)
+			out.write(row);
+	}
+
+	// Reading
+
+	/**
+	 * @param file
+	 *            any file
+	 * @return true if the file starts like a snapshot
+	 */
+	public static boolean isSnapshot(File file) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				return (raf.length() >= 4) && (raf.readInt() == MAGIC);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the header only
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @return the source fingerprint given to write
+	 * @throws IOException
+	 *             if the file cannot be read or is not a snapshot of this version
+	 */
+	public static long readSourceFingerprint(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if ((raf.length() < 16) || (raf.readInt() != MAGIC) || (raf.readInt() != VERSION))
+				throw new IOException("Not a system snapshot of this version: " + file);
+			return raf.readLong();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads a system saved by write
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @return the system, with updated data structures
+	 * @throws IOException
+	 *             if the file cannot be read or is not a snapshot of this version
+	 */
+	public static CratSystem read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			ByteBuffer buffer = readFully(raf.getChannel(), file);
+			if ((buffer.remaining() < 8) || (buffer.getInt() != MAGIC))
+				throw new IOException("Not a system snapshot: " + file);
+			int version = buffer.getInt();
+			if (version != VERSION)
+				throw new IOException(String.format("Unsupported snapshot version %d: %s",
+						version, file));
+			buffer.getLong(); // source fingerprint
+			return read(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated system snapshot: " + file, e);
+		} catch (IllegalArgumentException e) {
+			// a section longer than the file
+			throw new IOException("Truncated system snapshot: " + file, e);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return a heap buffer with the whole file, ready to be read
+	 */
+	private static ByteBuffer readFully(FileChannel channel, File file) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("System snapshot too large: " + file);
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				throw new IOException("Truncated system snapshot: " + file);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static CratSystem read(ByteBuffer buffer) {
+		int systemType = buffer.getInt();
+		CratSystem system = new CratSystem(readStrings(buffer)[0], systemType);
+
+		// packages
+		int[] packageIds = readInts(buffer);
+		String[] packageNames = readStrings(buffer);
+		int[][] packageClasses = readSets(buffer);
+		TreeMap<Integer, CratPackage> packages = new TreeMap<Integer, CratPackage>();
+		for (int i = 0; i < packageIds.length; i++) {
+			CratPackage pkg = new CratPackage(packageIds[i], packageNames[i]);
+			pkg.setSystem(system);
+			packages.put(pkg.getId(), pkg);
+		}
+
+		// classes
+		int[] classIds = readInts(buffer);
+		String[] classNames = readStrings(buffer);
+		String[] javaPaths = readStrings(buffer);
+		int[] classProperties = readInts(buffer);
+		int[] targets = readInts(buffer);
+		int[] classPackages = readInts(buffer);
+		int[] superclassIds = readInts(buffer);
+		int[] externalIds = readInts(buffer);
+		int[][] members = readSets(buffer);
+		int[][] superclasses = readSets(buffer);
+		int[][] subclasses = readSets(buffer);
+		int[][] internals = readSets(buffer);
+		int[][] containers = readSets(buffer);
+		int[][] boxedMembers = readSets(buffer);
+		TreeMap<Integer, SystemClass> classes = new TreeMap<Integer, SystemClass>();
+		for (int i = 0; i < classIds.length; i++) {
+			SystemClass cl = new SystemClass(classIds[i], classNames[i], javaPaths[i]);
+			cl.properties = classProperties[i];
+			cl.isTarget = (targets[i] != 0);
+			cl.entities = system;
+			for (int id : members[i])
+				cl.add(id);
+			cl.updateHash();
+			classes.put(cl.id, cl);
+		}
+		for (int i = 0; i < classIds.length; i++) {
+			SystemClass cl = classes.get(classIds[i]);
+			if (classPackages[i] != NONE)
+				cl.mypackage = packages.get(classPackages[i]);
+			if (superclassIds[i] != NONE)
+				cl.superclass = classes.get(superclassIds[i]);
+			if (externalIds[i] != NONE)
+				cl.external = classes.get(externalIds[i]);
+			for (int id : superclasses[i])
+				cl.superclasses.add(classes.get(id));
+			for (int id : subclasses[i])
+				cl.subclasses.add(classes.get(id));
+			for (int id : internals[i])
+				cl.internals.add(classes.get(id));
+			for (int id : containers[i])
+				cl.containers.add(classes.get(id));
+		}
+		for (int i = 0; i < packageIds.length; i++)
+			for (int id : packageClasses[i])
+				packages.get(packageIds[i]).put(id, classes.get(id));
+		TreeMap<Integer, CratClass> boxedClasses = new TreeMap<Integer, CratClass>();
+		for (int i = 0; i < classIds.length; i++)
+			boxedClasses.put(classIds[i], new CratClass(new EntitySet(boxedMembers[i])));
+
+		// entities
+		int[] entityIds = readInts(buffer);
+		int[] kinds = readInts(buffer);
+		String[] entityNames = readStrings(buffer);
+		int[] originClasses = readInts(buffer);
+		int[] originBoxes = readInts(buffer);
+		int[] entityProperties = readInts(buffer);
+		int[] movable = readInts(buffer);
+		double[] similarities = readDoubles(buffer);
+		int[][] boxes = readSets(buffer);
+		TreeMap<Integer, CratEntity> entities = new TreeMap<Integer, CratEntity>();
+		TreeMap<Integer, CratEntity> boxedEntities = new TreeMap<Integer, CratEntity>();
+		for (int i = 0; i < entityIds.length; i++) {
+			SystemClass origin = (originClasses[i] != NONE) ? classes.get(originClasses[i]) : null;
+			// the boxed entity is a copy with its own sets
+			for (int copy = 0; copy < 2; copy++) {
+				CratEntity entity = createEntity(kinds[i], entityIds[i], entityNames[i], origin);
+				entity.originBox = originBoxes[i];
+				entity.properties = entityProperties[i];
+				entity.movable = (movable[i] != 0);
+				entity.similarityToOriginClass = similarities[i];
+				entity.box = new EntitySet(boxes[i]);
+				((copy == 0) ? entities : boxedEntities).put(entity.id, entity);
+			}
+		}
+		readEntitySets(buffer, entities.values());
+		readEntitySets(buffer, boxedEntities.values());
+
+		// active entities
+		int[][] active = readSets(buffer);
+		system.setPackages(packages);
+		system.setClasses(classes);
+		system.setEntities(entities);
+		system.setUpdatedStructures(new EntitySet(active[0]), boxedClasses, boxedEntities,
+				new EntitySet(active[1]));
+		return system;
+	}
+
+	private static CratEntity createEntity(int kind, int id, String name, SystemClass origin) {
+		if (kind == KIND_BOX)
+			return new EntityBox(id, name, origin);
+		if (kind == KIND_METHOD)
+			return new CratMethod(id, name, origin);
+		return new CratAttribute(id, name, origin);
+	}
+
+	private static void readEntitySets(ByteBuffer buffer, Collection<CratEntity> entities) {
+		int[][] entitySets = readSets(buffer);
+		int[][] relatives = readSets(buffer);
+		int[][] forbidden = readSets(buffer);
+		int i = 0;
+		for (CratEntity entity : entities) {
+			entity.entitySet = new EntitySet(entitySets[i]);
+			entity.relatives = new EntitySet(relatives[i]);
+			entity.forbiddenClassmates = new EntitySet(forbidden[i]);
+			i++;
+		}
+	}
+
+	private static int[] readInts(ByteBuffer buffer) {
+		int[] values = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * values.length);
+		return values;
+	}
+
+	private static double[] readDoubles(ByteBuffer buffer) {
+		double[] values = new double[buffer.getInt()];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + 8 * values.length);
+		return values;
+	}
+
+	private static int[][] readSets(ByteBuffer buffer) {
+		int rows = buffer.getInt();
+		int[] offsets = new int[rows + 1];
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + 4 * offsets.length);
+		int[][] sets = new int[rows][];
+		for (int i = 0; i < rows; i++) {
+			sets[i] = new int[offsets[i + 1] - offsets[i]];
+			buffer.asIntBuffer().get(sets[i]);
+			buffer.position(buffer.position() + 4 * sets[i].length);
+		}
+		return sets;
+	}
+
+	private static String[] readStrings(ByteBuffer buffer) {
+		int rows = buffer.getInt();
+		int[] offsets = new int[rows + 1];
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + 4 * offsets.length);
+		String[] strings = new String[rows];
+		for (int i = 0; i < rows; i++) {
+			byte[] bytes = new byte[offsets[i + 1] - offsets[i]];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, UTF8);
+		}
+		return strings;
+	}
+
+	// File format
+	private static final int MAGIC = 0x43524154; // "CRAT"
+	private static final int VERSION = 2;
+	public static final long NO_SOURCES = 0L; // unknown source fingerprint
+	private static final int NONE = -1;
+	private static final int KIND_ATTRIBUTE = 0;
+	private static final int KIND_METHOD = 1;
+	private static final int KIND_BOX = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+}
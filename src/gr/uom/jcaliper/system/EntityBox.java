@@ -24,4 +24,6 @@ public class EntityBox extends CratAttribute {
 		return true;
 	}
 
+	private static final long serialVersionUID = 1L;
+
 }
@@ -1,16 +1,36 @@
 package gr.uom.jcaliper.system;
 
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Set of entity IDs
- * 
+ * <p>
+ * The set is kept as a compressed bitmap: only the non-empty 64-bit words are stored, together
+ * with their word index, in ascending order. A class (whose entities have consecutive IDs)
+ * occupies a few contiguous words, while a sparse set (relatives, entity sets) pays only for the
+ * words that actually hold an entity. Iteration is always in ascending ID order.
+ *
  * @author Panagiotis Kouros
  */
-public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet> {
+public class EntitySet extends AbstractSet<Integer> implements Comparable<EntitySet>, Cloneable,
+		Serializable {
+
+	// word indexes (id >> 6) of the non-empty words, ascending
+	private int[] keys;
+	// the non-empty words, parallel to keys
+	private long[] words;
+	// number of words in use
+	private int nWords;
+	// number of entity IDs in the set
+	private int cardinality;
+	// XOR of the hash keys of all entity IDs in the set
+	private long elementsHash;
 
 	// Constructors
 
@@ -19,44 +39,48 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 	 */
 	public EntitySet() {
 		super();
+		keys = EMPTY_KEYS;
+		words = EMPTY_WORDS;
 	}
 
 	/**
 	 * Creates a new set of entity IDs with only one element
 	 */
 	public EntitySet(int id) {
-		super();
+		this();
 		add(id);
 	}
 
 	/**
 	 * Creates a new entity set from any collection of entity IDs
-	 * 
+	 *
 	 * @param collection
 	 *            a collection of entity IDs
 	 */
 	public EntitySet(Collection<? extends Integer> collection) {
-		super(collection);
+		this();
+		addAll(collection);
 	}
 
 	/**
 	 * Creates a new entity set from any set of entity IDs
-	 * 
+	 *
 	 * @param set
 	 *            a set of entity IDs
 	 */
 	public EntitySet(Set<? extends Integer> set) {
-		super(set);
+		this();
+		addAll(set);
 	}
 
 	/**
 	 * Creates a new entity set from any array of entity IDs
-	 * 
+	 *
 	 * @param set
 	 *            an array of entity IDs
 	 */
 	public EntitySet(int[] array) {
-		super();
+		this();
 		for (int id : array)
 			add(id);
 	}
@@ -65,7 +89,14 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 
 	@Override
 	public EntitySet clone() {
-		return (EntitySet) super.clone(); // a shallow copy
+		try {
+			EntitySet clone = (EntitySet) super.clone();
+			clone.keys = Arrays.copyOf(keys, nWords);
+			clone.words = Arrays.copyOf(words, nWords);
+			return clone;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError();
+		}
 	}
 
 	/**
@@ -75,7 +106,7 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 		if (size() == 0)
 			return "";
 		StringBuilder sb = new StringBuilder(size() << 2); // 4*size()
-		for (int e : this)
+		for (int e = nextId(Integer.MIN_VALUE); e != NONE; e = nextId(e + 1))
 			sb.append(e).append(',');
 		sb.setLength(sb.length() - 1); // delete last comma
 		return sb.toString();
@@ -83,14 +114,14 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 
 	public EntitySet unbox(IEntityPool pool) {
 		EntitySet unboxed = new EntitySet();
-		for (int id : this)
+		for (int id = nextId(Integer.MIN_VALUE); id != NONE; id = nextId(id + 1))
 			unboxed.addAll(pool.getEntity(id).getBoxElements());
 		return unboxed;
 	}
 
 	public EntitySet boxed(IEntityPool pool) {
 		EntitySet boxed = new EntitySet();
-		for (int id : this)
+		for (int id = nextId(Integer.MIN_VALUE); id != NONE; id = nextId(id + 1))
 			boxed.add(pool.getEntity(id).getOriginBox());
 		return boxed;
 	}
@@ -198,49 +229,352 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 	}
 
 	/**
-	 * The long hash code is generated from set elements and set signature
-	 * 
+	 * The long hash code is the XOR of the (pseudo random) hash keys of the set elements. It is
+	 * maintained while elements are added or removed, so it is available in O(1). The hash of the
+	 * empty set is 0.
+	 *
 	 * @return the long hash code
 	 */
 	public long calculateHash() {
-		// Most Significant part = hash of set members
-		// Less Significant part = hash of set signature
-		int hash = 0;
-		for (int e : this)
-			hash = ((hash << 5) - hash) + e; // 31 * hash + id
-		return ((long) hash << 32) + signature().hashCode();
+		return elementsHash;
+	}
+
+	/**
+	 * @param id
+	 *            an entity ID
+	 * @return the 64-bit hash key of the entity ID
+	 */
+	public static long hashKeyOf(int id) {
+		return mix64(id + 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * The hash of (this set plus the id), when the id is not a member
+	 *
+	 * @param id
+	 *            the entity ID to add
+	 * @return the hash of the resulting set
+	 */
+	public long hashPlus(int id) {
+		return elementsHash ^ hashKeyOf(id);
+	}
+
+	/**
+	 * The hash of (this set without the id), when the id is a member
+	 *
+	 * @param id
+	 *            the entity ID to remove
+	 * @return the hash of the resulting set
+	 */
+	public long hashWithout(int id) {
+		return elementsHash ^ hashKeyOf(id);
+	}
+
+	/**
+	 * Scrambles the bits of a 64-bit value (SplitMix64 finalizer). mix64(0) == 0.
+	 *
+	 * @param z
+	 *            the value
+	 * @return the scrambled value
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// Set interface (bitmap implementation)
+
+	@Override
+	public int size() {
+		return cardinality;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof Integer) && contains(((Integer) o).intValue());
+	}
+
+	public boolean contains(int id) {
+		int pos = indexOf(id >> 6);
+		return (pos >= 0) && ((words[pos] & (1L << id)) != 0);
+	}
+
+	@Override
+	public boolean add(Integer id) {
+		return add(id.intValue());
+	}
+
+	public boolean add(int id) {
+		int key = id >> 6;
+		long bit = 1L << id;
+		int pos = indexOf(key);
+		if (pos >= 0) {
+			if ((words[pos] & bit) != 0)
+				return false;
+			words[pos] |= bit;
+		} else
+			insertWord(-(pos + 1), key, bit);
+		cardinality++;
+		elementsHash ^= hashKeyOf(id);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return (o instanceof Integer) && remove(((Integer) o).intValue());
+	}
+
+	public boolean remove(int id) {
+		int pos = indexOf(id >> 6);
+		if (pos < 0)
+			return false;
+		long bit = 1L << id;
+		if ((words[pos] & bit) == 0)
+			return false;
+		words[pos] &= ~bit;
+		if (words[pos] == 0)
+			deleteWord(pos);
+		cardinality--;
+		elementsHash ^= hashKeyOf(id);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		nWords = 0;
+		cardinality = 0;
+		elementsHash = 0;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Integer> collection) {
+		if (!(collection instanceof EntitySet))
+			return super.addAll(collection);
+		EntitySet other = (EntitySet) collection;
+		if (other.nWords == 0)
+			return false;
+		if (nWords == 0) {
+			keys = Arrays.copyOf(other.keys, other.nWords);
+			words = Arrays.copyOf(other.words, other.nWords);
+			nWords = other.nWords;
+			cardinality = other.cardinality;
+			elementsHash = other.elementsHash;
+			return true;
+		}
+		int before = cardinality;
+		if (other.keysAreSubsetOf(this))
+			orInPlace(other); // no new words: no allocation
+		else
+			orMerged(other);
+		return cardinality != before;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> collection) {
+		if (!(collection instanceof EntitySet)) {
+			boolean modified = false;
+			for (Object o : collection)
+				modified |= remove(o);
+			return modified;
+		}
+		EntitySet other = (EntitySet) collection;
+		int before = cardinality;
+		int i = 0, j = 0, n = 0;
+		cardinality = 0;
+		while (i < nWords) {
+			long w = words[i];
+			while ((j < other.nWords) && (other.keys[j] < keys[i]))
+				j++;
+			if ((j < other.nWords) && (other.keys[j] == keys[i]))
+				w &= ~other.words[j];
+			if (w != 0) {
+				keys[n] = keys[i];
+				words[n++] = w;
+				cardinality += Long.bitCount(w);
+			}
+			i++;
+		}
+		nWords = n;
+		if (cardinality != before)
+			recalculateHash();
+		return cardinality != before;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> collection) {
+		if (!(collection instanceof EntitySet))
+			return super.retainAll(collection);
+		EntitySet other = (EntitySet) collection;
+		int before = cardinality;
+		int i = 0, j = 0, n = 0;
+		cardinality = 0;
+		while ((i < nWords) && (j < other.nWords)) {
+			if (keys[i] < other.keys[j])
+				i++;
+			else if (keys[i] > other.keys[j])
+				j++;
+			else {
+				long w = words[i] & other.words[j];
+				if (w != 0) {
+					keys[n] = keys[i];
+					words[n++] = w;
+					cardinality += Long.bitCount(w);
+				}
+				i++;
+				j++;
+			}
+		}
+		nWords = n;
+		if (cardinality != before)
+			recalculateHash();
+		return cardinality != before;
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> collection) {
+		if (!(collection instanceof EntitySet))
+			return super.containsAll(collection);
+		EntitySet other = (EntitySet) collection;
+		if (other.cardinality > cardinality)
+			return false;
+		int i = 0;
+		for (int j = 0; j < other.nWords; j++) {
+			while ((i < nWords) && (keys[i] < other.keys[j]))
+				i++;
+			if ((i == nWords) || (keys[i] != other.keys[j])
+					|| ((other.words[j] & ~words[i]) != 0))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new EntityIterator();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof EntitySet))
+			return super.equals(o);
+		EntitySet other = (EntitySet) o;
+		if ((cardinality != other.cardinality) || (nWords != other.nWords))
+			return false;
+		for (int i = 0; i < nWords; i++)
+			if ((keys[i] != other.keys[i]) || (words[i] != other.words[i]))
+				return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		// the Set contract: sum of the element hash codes
+		int sum = 0;
+		for (int e = nextId(Integer.MIN_VALUE); e != NONE; e = nextId(e + 1))
+			sum += e;
+		return sum;
+	}
+
+	/**
+	 * Iterates the set without boxing:
+	 * <code>for (int id = set.nextId(0); id != EntitySet.NONE; id = set.nextId(id + 1))</code>
+	 *
+	 * @param fromId
+	 *            the first ID to check
+	 * @return the smallest ID of the set that is not less than fromId, or NONE
+	 */
+	public int nextId(int fromId) {
+		int key = fromId >> 6;
+		int pos = indexOf(key);
+		long w;
+		if (pos >= 0)
+			w = words[pos] & (-1L << fromId);
+		else {
+			pos = -(pos + 1);
+			if (pos >= nWords)
+				return NONE;
+			key = keys[pos];
+			w = words[pos];
+		}
+		while (w == 0) {
+			if (++pos >= nWords)
+				return NONE;
+			key = keys[pos];
+			w = words[pos];
+		}
+		return (key << 6) + Long.numberOfTrailingZeros(w);
 	}
 
 	// Set operations
 
 	public EntitySet union(EntitySet other) {
-		EntitySet union = new EntitySet(this);
+		EntitySet union = clone();
 		union.addAll(other);
 		return union;
 	}
 
 	public EntitySet difference(EntitySet other) {
-		EntitySet difference = new EntitySet(this);
+		EntitySet difference = clone();
 		difference.removeAll(other);
 		return difference;
 	}
 
 	public EntitySet intersection(EntitySet other) {
-		EntitySet intersection = new EntitySet(this);
+		EntitySet intersection = clone();
 		intersection.retainAll(other);
 		return intersection;
 	}
 
+	/**
+	 * Counts the common elements without creating the intersection
+	 *
+	 * @param other
+	 *            the other set
+	 * @return the size of the intersection
+	 */
+	public int intersectionSize(EntitySet other) {
+		int common = 0;
+		int i = 0, j = 0;
+		while ((i < nWords) && (j < other.nWords)) {
+			if (keys[i] < other.keys[j])
+				i++;
+			else if (keys[i] > other.keys[j])
+				j++;
+			else
+				common += Long.bitCount(words[i++] & other.words[j++]);
+		}
+		return common;
+	}
+
+	/**
+	 * Counts the elements of the union without creating it
+	 *
+	 * @param other
+	 *            the other set
+	 * @return the size of the union
+	 */
+	public int unionSize(EntitySet other) {
+		return (cardinality + other.cardinality) - intersectionSize(other);
+	}
+
 	// create new set while including/excluding element
 
 	public EntitySet plus(int element) {
-		EntitySet union = new EntitySet(this);
+		EntitySet union = clone();
 		union.add(element);
 		return union;
 	}
 
 	public EntitySet without(int element) {
-		EntitySet difference = new EntitySet(this);
+		EntitySet difference = clone();
 		difference.remove(element);
 		return difference;
 	}
@@ -249,7 +583,7 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 
 	/**
 	 * Calculates the Jaccard similarity to another set
-	 * 
+	 *
 	 * @param other
 	 *            the other set
 	 * @return the Jaccard similarity index
@@ -258,7 +592,7 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 		int sizeTotal = size() + other.size();
 		if (sizeTotal == 0)
 			return 0.0;
-		int commonElements = intersection(other).size();
+		int commonElements = intersectionSize(other);
 		return (double) commonElements / (sizeTotal - commonElements);
 	}
 
@@ -266,7 +600,7 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 
 	/**
 	 * Calculates the Jaccard distance to another set
-	 * 
+	 *
 	 * @param other
 	 *            the other set
 	 * @return the Jaccard distance
@@ -283,19 +617,158 @@ public class EntitySet extends TreeSet<Integer> implements Comparable<EntitySet>
 			return -1;
 		else if (size() > that.size())
 			return 1;
-		else {
-			Iterator<Integer> thisIterator = iterator();
-			Iterator<Integer> thatIterator = that.iterator();
-			while (thisIterator.hasNext()) {
-				int thisNext = thisIterator.next();
-				int thatNext = thatIterator.next();
-				if (thisNext < thatNext)
-					return -1;
-				else if (thisNext > thatNext)
-					return 1;
+		else
+			// Equal sizes: the first different element decides
+			for (int i = 0; i < nWords; i++) {
+				if (keys[i] != that.keys[i])
+					return (keys[i] < that.keys[i]) ? -1 : 1;
+				long diff = words[i] ^ that.words[i];
+				if (diff != 0)
+					return ((words[i] & Long.lowestOneBit(diff)) != 0) ? -1 : 1;
 			}
-		}
 		return 0;
 	}
 
+	// Bitmap internals
+
+	private int indexOf(int key) {
+		if (nWords == 0)
+			return -1;
+		// consecutive words (the usual case for classes): direct access
+		int first = keys[0];
+		if ((keys[nWords - 1] - first) == (nWords - 1)) {
+			if (key < first)
+				return -1;
+			if (key - first >= nWords)
+				return -(nWords + 1);
+			return key - first;
+		}
+		return Arrays.binarySearch(keys, 0, nWords, key);
+	}
+
+	private void insertWord(int pos, int key, long word) {
+		if (nWords == keys.length) {
+			int capacity = (nWords < 2) ? 2 : nWords + (nWords >> 1);
+			keys = Arrays.copyOf(keys, capacity);
+			words = Arrays.copyOf(words, capacity);
+		}
+		if (pos < nWords) {
+			System.arraycopy(keys, pos, keys, pos + 1, nWords - pos);
+			System.arraycopy(words, pos, words, pos + 1, nWords - pos);
+		}
+		keys[pos] = key;
+		words[pos] = word;
+		nWords++;
+	}
+
+	private void deleteWord(int pos) {
+		nWords--;
+		if (pos < nWords) {
+			System.arraycopy(keys, pos + 1, keys, pos, nWords - pos);
+			System.arraycopy(words, pos + 1, words, pos, nWords - pos);
+		}
+	}
+
+	private boolean keysAreSubsetOf(EntitySet other) {
+		int i = 0;
+		for (int j = 0; j < nWords; j++) {
+			while ((i < other.nWords) && (other.keys[i] < keys[j]))
+				i++;
+			if ((i == other.nWords) || (other.keys[i] != keys[j]))
+				return false;
+		}
+		return true;
+	}
+
+	private void orInPlace(EntitySet other) {
+		int i = 0;
+		for (int j = 0; j < other.nWords; j++) {
+			while (keys[i] < other.keys[j])
+				i++;
+			long added = other.words[j] & ~words[i];
+			if (added != 0) {
+				cardinality += Long.bitCount(added);
+				words[i] |= added;
+				for (; added != 0; added &= added - 1)
+					elementsHash ^= hashKeyOf((keys[i] << 6) + Long.numberOfTrailingZeros(added));
+			}
+		}
+	}
+
+	private void orMerged(EntitySet other) {
+		int[] newKeys = new int[nWords + other.nWords];
+		long[] newWords = new long[nWords + other.nWords];
+		int i = 0, j = 0, n = 0;
+		while ((i < nWords) || (j < other.nWords)) {
+			if ((j == other.nWords) || ((i < nWords) && (keys[i] < other.keys[j]))) {
+				newKeys[n] = keys[i];
+				newWords[n++] = words[i++];
+			} else if ((i == nWords) || (keys[i] > other.keys[j])) {
+				newKeys[n] = other.keys[j];
+				newWords[n++] = other.words[j++];
+			} else {
+				newKeys[n] = keys[i];
+				newWords[n++] = words[i++] | other.words[j++];
+			}
+		}
+		keys = newKeys;
+		words = newWords;
+		nWords = n;
+		cardinality = 0;
+		for (int k = 0; k < n; k++)
+			cardinality += Long.bitCount(words[k]);
+		recalculateHash();
+	}
+
+	private void recalculateHash() {
+		elementsHash = 0;
+		for (int i = 0; i < nWords; i++)
+			for (long w = words[i]; w != 0; w &= w - 1)
+				elementsHash ^= hashKeyOf((keys[i] << 6) + Long.numberOfTrailingZeros(w));
+	}
+
+	private class EntityIterator implements Iterator<Integer> {
+
+		private int pos = -1; // index of current word
+		private long remaining = 0; // bits of current word not yet returned
+		private int last = NONE;
+
+		@Override
+		public boolean hasNext() {
+			while ((remaining == 0) && (pos + 1 < nWords))
+				remaining = words[++pos];
+			return remaining != 0;
+		}
+
+		@Override
+		public Integer next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			long bit = Long.lowestOneBit(remaining);
+			remaining ^= bit;
+			last = (keys[pos] << 6) + Long.numberOfTrailingZeros(bit);
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == NONE)
+				throw new IllegalStateException();
+			int key = last >> 6;
+			EntitySet.this.remove(last);
+			last = NONE;
+			int found = indexOf(key);
+			if (found < 0) { // the word was deleted
+				pos = -(found + 1) - 1;
+				remaining = 0;
+			}
+		}
+	}
+
+	/** Returned by nextId() when no more elements exist */
+	public static final int NONE = Integer.MIN_VALUE;
+
+	private static final int[] EMPTY_KEYS = new int[0];
+	private static final long[] EMPTY_WORDS = new long[0];
+
 }
@@ -0,0 +1,387 @@
+package gr.uom.jcaliper.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates CratSystems of any size, without a Java project
+ * <p>
+ * The entities are first grouped in planted classes. Each method uses some entities, mostly of
+ * its own planted class (intra-class coupling). Then a share of the entities is misplaced to
+ * other classes, giving the searches something to recover. Some classes form inheritance
+ * chains (their members become forbidden classmates) and some attributes are accessed by a
+ * dedicated method only (they can be boxed). The same settings and seed always generate the
+ * same system. A CraCase of any box type can be created on it, as on an analyzed project.
+ *
+ * @author Panagiotis Kouros
+ */
+public class SyntheticSystemGenerator {
+
+	private long seed = 1;
+	private int numOfClasses = 100;
+	private int numOfPackages = 5;
+	private int numOfEntities = 1000;
+	private double attributeRatio = 0.3;
+	private int usesPerMethod = 4;
+	private double intraClassCoupling = 0.8;
+	private int inheritanceDepth = 0;
+	private double inheritanceShare = 0.1;
+	private double boxableAttributeShare = 0.1;
+	private double misplacedShare = 0.1;
+
+	// The planted classes of the last generated system
+	private ArrayList<EntitySet> plantedPartition = new ArrayList<EntitySet>();
+
+	// Generation
+
+	/**
+	 * @return a new system, with updated data structures
+	 */
+	public CratSystem generate() {
+		if ((numOfClasses < 1) || (numOfEntities < 2 * numOfClasses) || (usesPerMethod < 1))
+			throw new IllegalArgumentException(
+					"Need at least 2 entities per class and 1 use per method");
+		Random rand = new Random(seed);
+		int n = numOfEntities;
+		// planted classes: consecutive entity indexes, attributes first
+		int[] clusterOf = new int[n];
+		int[] clusterStart = new int[numOfClasses + 1];
+		boolean[] isAttribute = new boolean[n];
+		for (int c = 0, e = 0; c < numOfClasses; c++) {
+			clusterStart[c] = e;
+			int size = n / numOfClasses + ((c < n % numOfClasses) ? 1 : 0);
+			int attributes = Math.min(size - 1, (int) Math.round(size * attributeRatio));
+			for (int k = 0; k < size; k++, e++) {
+				clusterOf[e] = c;
+				isAttribute[e] = (k < attributes);
+			}
+		}
+		clusterStart[numOfClasses] = n;
+		// inheritance chains of consecutive classes
+		int[] parentOf = new int[numOfClasses];
+		boolean[] inHierarchy = new boolean[numOfClasses];
+		for (int c = 0; c < numOfClasses; c++) {
+			parentOf[c] = -1;
+			if ((inheritanceDepth > 0) && !inHierarchy[c] && (rand.nextDouble() < inheritanceShare)) {
+				int last = Math.min(c + inheritanceDepth, numOfClasses - 1);
+				inHierarchy[c] = true;
+				for (int sub = c + 1; sub <= last; sub++) {
+					parentOf[sub] = sub - 1;
+					inHierarchy[sub] = true;
+				}
+			}
+		}
+		// the entities used by each entity
+		ArrayList<TreeSet<Integer>> uses = new ArrayList<TreeSet<Integer>>(n);
+		for (int e = 0; e < n; e++)
+			uses.add(new TreeSet<Integer>());
+		// boxable attributes: used by a dedicated accessor method only
+		boolean[] isAccessor = new boolean[n];
+		boolean[] isBoxable = new boolean[n];
+		for (int c = 0; c < numOfClasses; c++) {
+			int method = clusterStart[c];
+			while ((method < clusterStart[c + 1]) && isAttribute[method])
+				method++;
+			for (int e = clusterStart[c]; isAttribute[e]; e++)
+				// keep a method that is not an accessor in every class
+				if ((method < clusterStart[c + 1] - 1) && (rand.nextDouble() < boxableAttributeShare)) {
+					isBoxable[e] = true;
+					isAccessor[method] = true;
+					uses.get(method).add(e);
+					method++;
+				}
+		}
+		// couplings of the other methods
+		for (int e = 0; e < n; e++) {
+			if (isAttribute[e] || isAccessor[e])
+				continue;
+			int c = clusterOf[e];
+			int clusterSize = clusterStart[c + 1] - clusterStart[c];
+			TreeSet<Integer> used = uses.get(e);
+			int intraUses = 0;
+			for (int i = 0; i < usesPerMethod; i++) {
+				int entity;
+				if ((numOfClasses == 1) || (rand.nextDouble() < intraClassCoupling)) {
+					if (intraUses == clusterSize - 1)
+						continue; // uses the whole class already
+					do
+						entity = clusterStart[c] + rand.nextInt(clusterSize);
+					while ((entity == e) || used.contains(entity));
+					intraUses++;
+				} else
+					do
+						entity = rand.nextInt(n);
+					while ((clusterOf[entity] == c) || used.contains(entity));
+				used.add(entity);
+			}
+		}
+		// every attribute is used (orphan entities are not part of a system)
+		boolean[] isUsed = new boolean[n];
+		for (int e = 0; e < n; e++)
+			for (int used : uses.get(e))
+				isUsed[used] = true;
+		for (int e = 0; e < n; e++)
+			if (isAttribute[e] && !isUsed[e]) {
+				int c = clusterOf[e];
+				int user;
+				do
+					user = clusterStart[c] + rand.nextInt(clusterStart[c + 1] - clusterStart[c]);
+				while (isAttribute[user] || isAccessor[user]);
+				uses.get(user).add(e);
+			}
+		// origin classes: misplace some entities of the classes out of hierarchies
+		int[] originOf = clusterOf.clone();
+		int[] remaining = new int[numOfClasses];
+		int freeClasses = 0;
+		for (int c = 0; c < numOfClasses; c++) {
+			remaining[c] = clusterStart[c + 1] - clusterStart[c];
+			if (!inHierarchy[c])
+				freeClasses++;
+		}
+		if (freeClasses > 1)
+			for (int e = 0; e < n; e++) {
+				int c = clusterOf[e];
+				if (inHierarchy[c] || isBoxable[e] || isAccessor[e] || (remaining[c] == 1)
+						|| (rand.nextDouble() >= misplacedShare))
+					continue;
+				int target;
+				do
+					target = rand.nextInt(numOfClasses);
+				while ((target == c) || inHierarchy[target]);
+				originOf[e] = target;
+				remaining[c]--;
+				remaining[target]++;
+			}
+		return createSystem(isAttribute, clusterOf, originOf, parentOf, uses);
+	}
+
+	private CratSystem createSystem(boolean[] isAttribute, int[] clusterOf,
+			int[] originOf, int[] parentOf, ArrayList<TreeSet<Integer>> uses) {
+		int n = originOf.length;
+		// entity IDs: consecutive in each origin class
+		int[] nextIdOf = new int[numOfClasses + 1];
+		for (int e = 0; e < n; e++)
+			nextIdOf[originOf[e] + 1]++;
+		nextIdOf[0] = 1;
+		for (int c = 1; c <= numOfClasses; c++)
+			nextIdOf[c] += nextIdOf[c - 1];
+		int[] idOf = new int[n];
+		for (int e = 0; e < n; e++)
+			idOf[e] = nextIdOf[originOf[e]]++;
+		// packages and classes
+		TreeMap<Integer, CratPackage> packages = new TreeMap<Integer, CratPackage>();
+		TreeMap<Integer, SystemClass> classes = new TreeMap<Integer, SystemClass>();
+		int pkgs = Math.max(1, Math.min(numOfPackages, numOfClasses));
+		for (int p = 1; p <= pkgs; p++)
+			packages.put(p, new CratPackage(p, "p" + p));
+		for (int c = 0; c < numOfClasses; c++) {
+			CratPackage pkg = packages.get(1 + (int) ((long) c * pkgs / numOfClasses));
+			int classId = c + 1;
+			SystemClass cl = new SystemClass(classId, "C" + classId, pkg.getName() + ".C"
+					+ classId);
+			cl.setPackage(pkg);
+			pkg.put(classId, cl);
+			classes.put(classId, cl);
+		}
+		for (int c = 0; c < numOfClasses; c++)
+			if (parentOf[c] >= 0) {
+				SystemClass cl = classes.get(c + 1);
+				cl.setSuperclass(classes.get(parentOf[c] + 1));
+				for (int anc = parentOf[c]; anc >= 0; anc = parentOf[anc]) {
+					SystemClass ancestor = classes.get(anc + 1);
+					cl.getSuperclasses().add(ancestor);
+					ancestor.getSubclasses().add(cl);
+				}
+			}
+		// entities
+		TreeMap<Integer, CratEntity> entities = new TreeMap<Integer, CratEntity>();
+		for (int e = 0; e < n; e++) {
+			int id = idOf[e];
+			SystemClass origin = classes.get(originOf[e] + 1);
+			CratEntity entity;
+			if (isAttribute[e])
+				entity = new CratAttribute(id, "a" + id, origin);
+			else
+				entity = new CratMethod(id, "m" + id, origin);
+			origin.add(id);
+			entities.put(id, entity);
+		}
+		for (int e = 0; e < n; e++)
+			for (int used : uses.get(e)) {
+				entities.get(idOf[e]).getEntitySet().add(idOf[used]);
+				// attributes know the methods using them
+				if (isAttribute[used])
+					entities.get(idOf[used]).getEntitySet().add(idOf[e]);
+			}
+		// the planted classes
+		plantedPartition = new ArrayList<EntitySet>(numOfClasses);
+		for (int c = 0; c < numOfClasses; c++)
+			plantedPartition.add(new EntitySet());
+		for (int e = 0; e < n; e++)
+			plantedPartition.get(clusterOf[e]).add(idOf[e]);
+
+		CratSystem system = new CratSystem(String.format("synthetic-%d-%d-%d", numOfClasses,
+				numOfEntities, seed), CratSystem.SYSTEM_PROJECT);
+		system.setPackages(packages);
+		system.setClasses(classes);
+		system.setEntities(entities);
+		system.updateDataStructures();
+		return system;
+	}
+
+	// Command line
+
+	/**
+	 * Saves a generated system, for the CommandLineRunner. Usage: SyntheticSystemGenerator
+	 * [-seed s] [-classes c] [-packages p] [-entities e] [-attributes ratio] [-uses u]
+	 * [-intra share] [-depth d] [-hierarchies share] [-boxable share] [-misplaced share] file
+	 */
+	public static void main(String[] args) throws IOException {
+		SyntheticSystemGenerator generator = new SyntheticSystemGenerator();
+		File file = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("-")) {
+				file = new File(arg);
+				continue;
+			}
+			String value = args[++i];
+			if (arg.equals("-seed"))
+				generator.setSeed(Long.parseLong(value));
+			else if (arg.equals("-classes"))
+				generator.setNumOfClasses(Integer.parseInt(value));
+			else if (arg.equals("-packages"))
+				generator.setNumOfPackages(Integer.parseInt(value));
+			else if (arg.equals("-entities"))
+				generator.setNumOfEntities(Integer.parseInt(value));
+			else if (arg.equals("-attributes"))
+				generator.setAttributeRatio(Double.parseDouble(value));
+			else if (arg.equals("-uses"))
+				generator.setUsesPerMethod(Integer.parseInt(value));
+			else if (arg.equals("-intra"))
+				generator.setIntraClassCoupling(Double.parseDouble(value));
+			else if (arg.equals("-depth"))
+				generator.setInheritanceDepth(Integer.parseInt(value));
+			else if (arg.equals("-hierarchies"))
+				generator.setInheritanceShare(Double.parseDouble(value));
+			else if (arg.equals("-boxable"))
+				generator.setBoxableAttributeShare(Double.parseDouble(value));
+			else if (arg.equals("-misplaced"))
+				generator.setMisplacedShare(Double.parseDouble(value));
+			else
+				throw new IllegalArgumentException("Unknown option " + arg);
+		}
+		if (file == null)
+			throw new IllegalArgumentException("No model file given");
+		CratSystem system = generator.generate();
+		system.writeTo(file);
+		System.out.println(system.getTinyPresentation());
+	}
+
+	// Getters and Setters
+
+	/**
+	 * @return the planted classes (sets of entity IDs) of the last generated system: the
+	 *         classes before misplacing entities. The lower the misplaced share and the higher
+	 *         the intra-class coupling, the closer they are to the optimum. With intra-class
+	 *         coupling 1 and at least as many uses per method as entities per class, every
+	 *         planted class is a clique without external couplings, and the planted partition
+	 *         is the known optimum.
+	 */
+	public ArrayList<EntitySet> getPlantedPartition() {
+		return plantedPartition;
+	}
+
+	public SyntheticSystemGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public SyntheticSystemGenerator setNumOfClasses(int numOfClasses) {
+		this.numOfClasses = numOfClasses;
+		return this;
+	}
+
+	public SyntheticSystemGenerator setNumOfPackages(int numOfPackages) {
+		this.numOfPackages = numOfPackages;
+		return this;
+	}
+
+	/**
+	 * @param numOfEntities
+	 *            the number of entities (at least 2 per class), spread evenly over the classes
+	 */
+	public SyntheticSystemGenerator setNumOfEntities(int numOfEntities) {
+		this.numOfEntities = numOfEntities;
+		return this;
+	}
+
+	/**
+	 * @param attributeRatio
+	 *            the share of attributes in each class (every class has a method)
+	 */
+	public SyntheticSystemGenerator setAttributeRatio(double attributeRatio) {
+		this.attributeRatio = attributeRatio;
+		return this;
+	}
+
+	/**
+	 * @param usesPerMethod
+	 *            the number of entities used by each method (except the accessors)
+	 */
+	public SyntheticSystemGenerator setUsesPerMethod(int usesPerMethod) {
+		this.usesPerMethod = usesPerMethod;
+		return this;
+	}
+
+	/**
+	 * @param intraClassCoupling
+	 *            the probability that a used entity belongs to the planted class of the method
+	 */
+	public SyntheticSystemGenerator setIntraClassCoupling(double intraClassCoupling) {
+		this.intraClassCoupling = intraClassCoupling;
+		return this;
+	}
+
+	/**
+	 * @param inheritanceDepth
+	 *            the number of subclass levels of each hierarchy (0 for no inheritance)
+	 */
+	public SyntheticSystemGenerator setInheritanceDepth(int inheritanceDepth) {
+		this.inheritanceDepth = inheritanceDepth;
+		return this;
+	}
+
+	/**
+	 * @param inheritanceShare
+	 *            the probability that a class is the root of a hierarchy
+	 */
+	public SyntheticSystemGenerator setInheritanceShare(double inheritanceShare) {
+		this.inheritanceShare = inheritanceShare;
+		return this;
+	}
+
+	/**
+	 * @param boxableAttributeShare
+	 *            the share of attributes used only by a dedicated accessor method
+	 */
+	public SyntheticSystemGenerator setBoxableAttributeShare(double boxableAttributeShare) {
+		this.boxableAttributeShare = boxableAttributeShare;
+		return this;
+	}
+
+	/**
+	 * @param misplacedShare
+	 *            the share of entities moved out of their planted class (only classes out of
+	 *            hierarchies, without accessors and boxable attributes)
+	 */
+	public SyntheticSystemGenerator setMisplacedShare(double misplacedShare) {
+		this.misplacedShare = misplacedShare;
+		return this;
+	}
+
+}